@@ -8,9 +8,13 @@
 package frc.robot;
 
 import com.ctre.phoenix6.configs.CurrentLimitsConfigs;
+import com.ctre.phoenix6.configs.Slot0Configs;
 import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
+import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.wpilibj.RobotBase;
+import frc.robot.util.SchedulingExperiment;
+import frc.robot.util.ThreadSchedulingPolicy;
 
 /**
  * This class defines the runtime mode used by AdvantageKit. The mode is always "real" when running
@@ -52,7 +56,82 @@ public final class Constants {
     /// Velocity in rot/s that shooter speed can be under by
     public static final double ERROR_MARGIN = 10;
 
+    /// Whether to close the velocity loop with VelocityTorqueCurrentFOC (needs Phoenix Pro)
+    /// instead of VelocityVoltage
+    public static final boolean USE_TORQUE_CURRENT_FOC = false;
+
+    /// Velocity gains used with VelocityVoltage, output in volts
+    public static final Slot0Configs VOLTAGE_GAINS =
+        new Slot0Configs().withKP(0.2).withKI(0).withKD(0).withKS(0.15).withKV(0.12);
+
+    /// Velocity gains used with VelocityTorqueCurrentFOC, output in amps
+    public static final Slot0Configs TORQUE_CURRENT_GAINS =
+        new Slot0Configs().withKP(5.0).withKI(0).withKD(0).withKS(2.0).withKV(0);
+
+    /// Update frequency of the velocity signal in Hz, faster than the loop so that the end of
+    /// spin-up and the drop after a shot are seen sooner
+    public static final double VELOCITY_SIGNAL_FREQUENCY = 100.0;
+
     /// The mode for the motors when innactive
     public static final NeutralModeValue NEUTRAL_MODE = NeutralModeValue.Coast;
+
+    /// Name of the shot map file in the deploy directory, see ShotMap for the format
+    public static final String SHOT_MAP_FILE = "shotmap.json";
+
+    /// Center of the target in blue alliance field coordinates in meters, flipped for red
+    public static final Translation2d TARGET = new Translation2d(4.63, 4.035);
+
+    /// Whether to lead the target by the robot's velocity when shooting while driving
+    public static final boolean SHOOT_ON_THE_MOVE = true;
+
+    /// Whether to spin the shooter up while idle when the robot is in or heading into the zone
+    public static final boolean PRECHARGE_ENABLED = true;
+
+    /// Distance from the target in meters inside which the shooter starts pre-charging
+    public static final double PRECHARGE_ZONE_RADIUS = 6.0;
+
+    /// Distance from the target in meters outside which the shooter stops pre-charging, larger
+    /// than the entry radius so driving along the edge of the zone does not toggle it
+    public static final double PRECHARGE_ZONE_EXIT_RADIUS = 7.0;
+
+    /// Seconds ahead to predict the robot's position from its velocity when checking the zone
+    public static final double PRECHARGE_LOOKAHEAD = 1.0;
+
+    /// Fraction of the expected setpoint to spin to while pre-charging
+    public static final double PRECHARGE_VELOCITY_FRACTION = 0.8;
+
+    /// Energy in joules that pre-charging may draw from the battery in each match period
+    public static final double PRECHARGE_ENERGY_BUDGET = 15000.0;
+
+    /// Remaining energy in joules below which the pre-charge velocity ramps down to zero
+    public static final double PRECHARGE_ENERGY_RAMP = 3000.0;
+
+    /// Supply current per motor in amps above which the pre-charge velocity ramps down
+    public static final double PRECHARGE_CURRENT_BUDGET = 20.0;
+
+    /// Rate at which the pre-charge velocity ramps, as a fraction of its full value per second
+    public static final double PRECHARGE_RAMP_RATE = 1.0;
+  }
+
+  public static class Scheduling {
+    /// Whether to alternate between CONFIG_A and CONFIG_B to compare them, otherwise only
+    /// CONFIG_A is used
+    public static final boolean AB_TEST_ENABLED = false;
+
+    /// Seconds to run each configuration before switching during an A/B test
+    public static final double AB_TEST_PERIOD = 30.0;
+
+    /// Default configuration, with both threads on the normal scheduler
+    public static final SchedulingExperiment.Configuration CONFIG_A =
+        new SchedulingExperiment.Configuration(
+            "Default", ThreadSchedulingPolicy.normal(), ThreadSchedulingPolicy.normal());
+
+    /// Real-time configuration. The main loop only runs as RT while the command scheduler runs,
+    /// and the odometry thread is pinned to the second core away from the main loop
+    public static final SchedulingExperiment.Configuration CONFIG_B =
+        new SchedulingExperiment.Configuration(
+            "RealTime",
+            ThreadSchedulingPolicy.realTime(15).withCpu(0),
+            ThreadSchedulingPolicy.realTime(1).withCpu(1));
   }
 }
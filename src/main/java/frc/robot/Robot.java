@@ -7,8 +7,13 @@
 
 package frc.robot;
 
+import edu.wpi.first.wpilibj.Threads;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.SMF.SubsystemManagerFactory;
+import frc.robot.subsystems.drive.PhoenixOdometryThread;
+import frc.robot.util.SchedulingExperiment;
+import frc.robot.util.ThreadSchedulingPolicy;
 import org.littletonrobotics.junction.LogFileUtil;
 import org.littletonrobotics.junction.LoggedRobot;
 import org.littletonrobotics.junction.Logger;
@@ -25,6 +30,7 @@ import org.littletonrobotics.junction.wpilog.WPILOGWriter;
 public class Robot extends LoggedRobot {
   private Command autonomousCommand;
   private RobotContainer robotContainer;
+  private SchedulingExperiment scheduling;
 
   public Robot() {
     // Record metadata
@@ -69,14 +75,25 @@ public class Robot extends LoggedRobot {
     // Instantiate our RobotContainer. This will perform all our button bindings,
     // and put our autonomous chooser on the dashboard.
     robotContainer = new RobotContainer();
+
+    // Set up thread scheduling for the main loop and odometry thread
+    scheduling =
+        new SchedulingExperiment(
+            Constants.Scheduling.CONFIG_A,
+            Constants.Scheduling.CONFIG_B,
+            Constants.Scheduling.AB_TEST_ENABLED,
+            Constants.Scheduling.AB_TEST_PERIOD,
+            PhoenixOdometryThread.getInstance()::setSchedulingPolicy,
+            PhoenixOdometryThread.getInstance()::getJitterP99Secs);
   }
 
   /** This function is called periodically during all modes. */
   @Override
   public void robotPeriodic() {
-    // Optionally switch the thread to high priority to improve loop
+    // Switch the thread to the configured priority to improve loop
     // timing (see the template project documentation for details)
-    // Threads.setCurrentThreadPriority(true, 99);
+    ThreadSchedulingPolicy mainLoopPolicy = scheduling.getMainLoopPolicy();
+    mainLoopPolicy.applyPriority();
 
     // Runs the Scheduler. This is responsible for polling buttons, adding
     // newly-scheduled commands, running already-scheduled commands, removing
@@ -85,13 +102,26 @@ public class Robot extends LoggedRobot {
     // the Command-based framework to work.
     CommandScheduler.getInstance().run();
 
+    // Expire state machine timeouts and apply asynchronous determinations. This runs after the
+    // scheduler so timeouts see the command callbacks from this cycle.
+    SubsystemManagerFactory.getInstance().periodic();
+
     // Return to non-RT thread priority (do not modify the first argument)
-    // Threads.setCurrentThreadPriority(false, 10);
+    if (mainLoopPolicy.isRealTime()) {
+      Threads.setCurrentThreadPriority(false, 10);
+    }
+
+    // Record loop timing and switch scheduling configurations during an A/B test
+    scheduling.periodic();
   }
 
   /** This function is called once when the robot is disabled. */
   @Override
-  public void disabledInit() {}
+  public void disabledInit() {
+    // State machines stop and return to their undetermined state while disabled, so they are
+    // determined again when the next mode starts
+    SubsystemManagerFactory.getInstance().disableAllSubsystems();
+  }
 
   /** This function is called periodically when disabled. */
   @Override
@@ -100,6 +130,8 @@ public class Robot extends LoggedRobot {
   /** This autonomous runs the autonomous command selected by your {@link RobotContainer} class. */
   @Override
   public void autonomousInit() {
+    // Enable and determine the state machines, which do nothing until a mode starts
+    SubsystemManagerFactory.getInstance().notifyAutonomousStart();
     autonomousCommand = robotContainer.getAutonomousCommand();
 
     // schedule the autonomous command (example)
@@ -122,6 +154,9 @@ public class Robot extends LoggedRobot {
     if (autonomousCommand != null) {
       autonomousCommand.cancel();
     }
+
+    // Enable and determine the state machines, which do nothing until a mode starts
+    SubsystemManagerFactory.getInstance().notifyTeleopStart();
   }
 
   /** This function is called periodically during operator control. */
@@ -133,6 +168,9 @@ public class Robot extends LoggedRobot {
   public void testInit() {
     // Cancels all running commands at the start of test mode.
     CommandScheduler.getInstance().cancelAll();
+
+    // Enable and determine the state machines, which do nothing until a mode starts
+    SubsystemManagerFactory.getInstance().notifyTestStart();
   }
 
   /** This function is called periodically during test mode. */
@@ -4,30 +4,57 @@ import edu.wpi.first.util.sendable.Sendable;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.*;
 import frc.robot.SMF.graph.DirectionalEnumGraph;
+import frc.robot.SMF.logging.StateMachineLogger;
+import frc.robot.SMF.logging.TransitionHistory;
+import frc.robot.SMF.logging.TransitionRecord.Cause;
+import frc.robot.SMF.logging.TransitionStatsLogger;
+import frc.robot.SMF.profiling.MachineProfile;
+import frc.robot.SMF.profiling.MachineProfile.Phase;
 import frc.robot.SMF.transitions.CommandTransition;
 import frc.robot.SMF.transitions.TransitionBase;
 import java.util.*;
-import org.littletonrobotics.junction.Logger;
 import org.littletonrobotics.junction.networktables.LoggedDashboardChooser;
 
 public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
   private final DirectionalEnumGraph<E, TransitionBase<E>> transitionGraph;
   private TransitionBase<E> currentTransition;
-  private TransitionBase<E> queuedTransition;
-  private final HashMap<E, Command> stateCommands;
+  private final TransitionRequestQueue<E> requestQueue;
+  private E routeTarget; // Final state of a multi-transition route, null if not routing
+
+  // Event mode: transitions report completion through command callbacks instead of being polled
+  private boolean eventDriven = false;
+  private boolean wakeRequested = true;
+  private boolean transitionEnded = false;
+  private boolean transitionWatched = false; // Completion is reported by a command callback
+  private final TimerWheel.Timeout queuedRequestTimeout = new TimerWheel.Timeout(this::wake);
+
+  // Incremented on disable so results of an outdated asynchronous determination are discarded
+  private int determinationGeneration = 0;
+  private final Command[] stateCommands; // Indexed by state ordinal
+  private static final int REQUEST_QUEUE_CAPACITY = 8;
   private final Timer transitionTimer;
-  private final Set<E> currentFlags;
-  private final double transitionTimeOut = 2;
+  private final EnumSet<E> currentFlags;
+  private final Set<E> currentFlagsView;
+  // Bit n is set when the state with ordinal n is a flag, only used when every state fits in it
+  private final boolean useFlagMask;
+  private long flagMask;
+  private long flagChangeCount = 0;
   private final E undeterminedState;
   private E currentState;
 
   private boolean enabled;
 
   private final Class<E> enumType;
+  private final E[] states;
   private final List<StateMachine<?>> subsystems;
 
+  private final StateMachineLogger<E> stateLogger;
+  private final TransitionStatsLogger<E> transitionStatsLogger;
+  private static final int HISTORY_CAPACITY = 32;
+  private final TransitionHistory<E> history;
   private final LoggedDashboardChooser<E> stateChooser;
   private E lastChooserRequest;
+  private MachineProfile profile; // Set by the SubsystemManager when registered
 
   /**
    * Instantiate a new State Machine
@@ -38,13 +65,18 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
    */
   public StateMachine(String name, E undeterminedState, Class<E> enumType) {
     this.enumType = enumType;
+    states = enumType.getEnumConstants();
+    // Larger enums keep their flags in the EnumSet alone
+    useFlagMask = DirectionalEnumGraph.fitsInMask(states.length);
 
     this.undeterminedState = undeterminedState;
     currentState = undeterminedState;
     currentTransition = null;
     transitionTimer = new Timer();
-    currentFlags = new HashSet<>();
-    stateCommands = new HashMap<>();
+    currentFlags = EnumSet.noneOf(enumType);
+    currentFlagsView = Collections.unmodifiableSet(currentFlags);
+    flagMask = 0;
+    stateCommands = new Command[states.length];
     subsystems = new ArrayList<>();
     stateChooser = new LoggedDashboardChooser<>(name + "State Chooser");
     lastChooserRequest = undeterminedState;
@@ -52,15 +84,21 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
     initStateChooser();
 
     setName(name);
+    stateLogger = new StateMachineLogger<>(name, enumType);
+    transitionStatsLogger = new TransitionStatsLogger<>(name);
+    history = new TransitionHistory<>(name, enumType, HISTORY_CAPACITY);
 
     transitionGraph = new DirectionalEnumGraph<>(enumType);
+    requestQueue =
+        new TransitionRequestQueue<>(
+            enumType, REQUEST_QUEUE_CAPACITY, TransitionRequestQueue.Policy.LATEST_WINS);
     enabled = false;
   }
 
   private void initStateChooser() {
     stateChooser.addDefaultOption(undeterminedState.name(), undeterminedState);
 
-    for (E state : enumType.getEnumConstants()) {
+    for (E state : states) {
       if (state != undeterminedState) {
         stateChooser.addOption(state.name(), state);
       }
@@ -95,7 +133,17 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
    * the machine is enabled
    */
   public final void enable() {
-    determineState();
+    enable(true);
+  }
+
+  /**
+   * Enable the state machine, optionally leaving it undetermined so {@link SubsystemManager} can
+   * determine it asynchronously
+   *
+   * @param determine whether to determine the state before enabling
+   */
+  final void enable(boolean determine) {
+    if (determine) determineState();
     enabled = true;
 
     onEnable();
@@ -128,9 +176,15 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
    */
   public final void disable() {
     enabled = false;
-    if (currentTransition != null) currentTransition.cancel();
+    determinationGeneration++;
+    if (currentTransition != null) cancelTransition(currentTransition);
     currentTransition = null;
-    queuedTransition = null;
+    requestQueue.clear();
+    routeTarget = null;
+    cancelTimeout(queuedRequestTimeout);
+    if (currentState != undeterminedState) {
+      history.add(currentState, undeterminedState, Cause.DISABLE);
+    }
     setState(undeterminedState);
     if (getCurrentCommand() != null) getCurrentCommand().cancel();
 
@@ -140,6 +194,57 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
   /** User-implemented method run immediately upon the machine being disabled */
   protected void onDisable() {}
 
+  /**
+   * Switch the machine between polling and event mode. In event mode, transitions that run a
+   * command are completed by the command scheduler's finish and interrupt callbacks, and queued
+   * transitions are forced by a timeout on the {@link SubsystemManager} timer wheel, so an idle
+   * machine does no transition work in periodic(). Transitions that do not run a command, or whose
+   * command could not be scheduled, are still polled while they are active.
+   *
+   * @param eventDriven whether to use event mode
+   */
+  protected final void setEventDriven(boolean eventDriven) {
+    this.eventDriven = eventDriven;
+    wakeRequested = true;
+  }
+
+  /**
+   * @return whether the machine is in event mode
+   */
+  public final boolean isEventDriven() {
+    return eventDriven;
+  }
+
+  /** Process transitions in the next periodic() call, even in event mode */
+  private void wake() {
+    wakeRequested = true;
+  }
+
+  private void onTransitionEnded() {
+    transitionEnded = true;
+    wake();
+  }
+
+  /**
+   * Schedule a timeout on the shared timer wheel. The callback runs on the main thread, after the
+   * command scheduler.
+   *
+   * @param timeout the timeout to schedule, rescheduled if it is already waiting
+   * @param delaySecs how long until the timeout expires
+   */
+  protected final void scheduleTimeout(TimerWheel.Timeout timeout, double delaySecs) {
+    SubsystemManagerFactory.getInstance().getTimerWheel().schedule(timeout, delaySecs);
+  }
+
+  /**
+   * Cancel a timeout on the shared timer wheel
+   *
+   * @param timeout the timeout to cancel
+   */
+  protected final void cancelTimeout(TimerWheel.Timeout timeout) {
+    SubsystemManagerFactory.getInstance().getTimerWheel().cancel(timeout);
+  }
+
   /**
    * @return whether the machine is in a determined state
    */
@@ -154,7 +259,7 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
    * @param command command to run
    */
   public final void registerStateCommand(E state, Command command) {
-    stateCommands.put(state, command);
+    stateCommands[state.ordinal()] = command;
   }
 
   /**
@@ -186,14 +291,29 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
     transitionGraph.addEdge(new CommandTransition<>(start, end, new InstantCommand(toRun)));
   }
 
+  /**
+   * Set how long a transition may run before a queued transition preempts it. Transitions use
+   * {@link TransitionBase#DEFAULT_TIMEOUT_SECS} unless set.
+   *
+   * @param start the start state of the transition
+   * @param end the end state of the transition
+   * @param timeoutSecs the timeout in seconds
+   */
+  protected final void setTransitionTimeout(E start, E end, double timeoutSecs) {
+    TransitionBase<E> transition = transitionGraph.getEdge(start, end);
+    if (transition == null) {
+      throw new IllegalArgumentException(
+          "No transition from " + start.name() + " to " + end.name() + " in " + getName());
+    }
+    transition.setTimeout(timeoutSecs);
+  }
+
   protected final void removeTransition(E start, E end) {
     transitionGraph.removeEdge(start, end);
   }
 
   protected final void removeAllTransitionsFromState(E start) {
-    for (E s : enumType.getEnumConstants()) {
-      transitionGraph.removeEdge(start, s);
-    }
+    transitionGraph.removeOutgoingEdges(start);
   }
 
   /**
@@ -203,7 +323,7 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
    * @param run transition command to run
    */
   public final void addOmniTransition(E state, Command run) {
-    for (E s : enumType.getEnumConstants()) {
+    for (E s : states) {
       if (s != state) {
         addTransition(s, state, run);
       }
@@ -308,30 +428,188 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
   }
 
   /**
-   * Request a transition to a state
+   * Request a transition to a state. If there is no transition directly to the state, the machine
+   * follows the shortest chain of transitions to it, without running the state commands of the
+   * states in between. Requests for states that cannot be reached are ignored.
+   *
+   * <p>Requests made while the machine is transitioning wait in a queue, and are resolved against
+   * the state the machine is in when they are taken off it. Requests that can be reached from
+   * neither the start nor the end of the current transition are dropped, except a request to stay
+   * in the start state.
    *
    * @param state state to transition to
    */
   public final void requestTransition(E state) {
-    TransitionBase<E> transition = transitionGraph.getEdge(currentState, state);
+    requestTransition(state, 0);
+  }
+
+  /**
+   * Request a transition to a state, with a priority used when the request has to wait and the
+   * machine uses {@link TransitionRequestQueue.Policy#PRIORITY}
+   *
+   * @param state state to transition to
+   * @param priority the priority of the request, higher requests are taken first
+   */
+  public final void requestTransition(E state, int priority) {
+    if (isTransitioning()) {
+      // The request will start from one of these, so if neither leads to it, it can never run. A
+      // request for the start state is kept, since preempting the transition serves it.
+      if (state != currentState
+          && !transitionGraph.hasRoute(currentState, state)
+          && !transitionGraph.hasRoute(currentTransition.getEndState(), state)) {
+        return;
+      }
+      requestQueue.add(state, priority);
+      updateQueuedRequestTimeout();
+      return;
+    }
+
     // Stop transitions to the same state from happening
-    if (!isTransitioning() && transition != null && state != currentState) {
-      currentTransition = transition;
+    if (state == currentState) {
+      return;
+    }
+
+    TransitionBase<E> transition = resolveRequest(currentState, state);
+    if (transition != null) {
       cancelStateCommand();
-      transition.execute();
+      startTransition(transition, Cause.REQUEST);
       transitionTimer.start();
+    }
+  }
+
+  /**
+   * Set how requests made while the machine is transitioning combine with the requests already
+   * waiting. Machines use {@link TransitionRequestQueue.Policy#LATEST_WINS} unless set.
+   *
+   * @param policy the policy to use
+   */
+  protected final void setRequestPolicy(TransitionRequestQueue.Policy policy) {
+    requestQueue.setPolicy(policy);
+  }
 
-      /*updateTransitioning();*/
-    } else if (state != currentState) {
-      queuedTransition = transition;
+  /**
+   * Find the transition to start to get from one state to another, and update the route target
+   *
+   * @param from the state the machine will start from
+   * @param target the requested state
+   * @return the transition to start, or null if the target is the start state or unreachable
+   */
+  private TransitionBase<E> resolveRequest(E from, E target) {
+    if (target == from) {
+      return null;
+    }
+
+    TransitionBase<E> transition = transitionGraph.getEdge(from, target);
+    if (transition != null) {
+      routeTarget = null;
+      return transition;
     }
+
+    E nextHop = transitionGraph.getNextHop(from, target);
+    if (nextHop == null) {
+      return null;
+    }
+    routeTarget = target;
+    return transitionGraph.getEdge(from, nextHop);
   }
 
-  private void cancelStateCommand() {
-    if (stateCommands.containsKey(getState())) {
-      Command prevCommand = stateCommands.get(getState());
-      if (prevCommand.isScheduled()) prevCommand.cancel();
+  /**
+   * Take requests off the queue until one needs a transition from the given state, then start it
+   *
+   * @param from the state the machine is in
+   * @return whether a transition was started
+   */
+  private boolean startQueuedRequest(E from) {
+    E request;
+    while ((request = requestQueue.poll()) != null) {
+      TransitionBase<E> transition = resolveRequest(from, request);
+      if (transition != null) {
+        currentState = from;
+        clearFlags();
+        startTransition(transition, Cause.QUEUE);
+        transitionTimer.reset();
+        transitionTimer.start();
+        updateQueuedRequestTimeout();
+        return true;
+      }
     }
+    updateQueuedRequestTimeout();
+    return false;
+  }
+
+  /**
+   * Whether preempting the current transition would leave a waiting request to act on, either a
+   * request that can start from the start state or a request to stay in it
+   *
+   * @return whether a waiting request can be served from the start state
+   */
+  private boolean canPreempt() {
+    for (int i = 0; i < requestQueue.size(); i++) {
+      E request = requestQueue.get(i);
+      if (request == currentState || transitionGraph.hasRoute(currentState, request)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** In event mode, wake the machine when a waiting request may preempt the current transition */
+  private void updateQueuedRequestTimeout() {
+    if (eventDriven && isTransitioning() && canPreempt()) {
+      scheduleTimeout(
+          queuedRequestTimeout,
+          Math.max(0.0, currentTransition.getTimeout() - transitionTimer.get()));
+    } else {
+      cancelTimeout(queuedRequestTimeout);
+    }
+  }
+
+  private void startTransition(TransitionBase<E> transition, Cause cause) {
+    history.add(currentState, transition.getEndState(), cause);
+    currentTransition = transition;
+    transitionEnded = false;
+    transitionWatched = false;
+    if (eventDriven && transition instanceof CommandTransition<E> commandTransition) {
+      Command command = commandTransition.getCommand();
+      SubsystemManagerFactory.getInstance().watchCommand(command, this::onTransitionEnded);
+      transition.execute();
+      if (command.isScheduled()) {
+        transitionWatched = true;
+      } else {
+        // The scheduler refused the command (for example it does not run while disabled), so no
+        // callback will come and the transition is polled instead
+        SubsystemManagerFactory.getInstance().unwatchCommand(command);
+      }
+    } else {
+      transition.execute();
+    }
+  }
+
+  private void cancelTransition(TransitionBase<E> transition) {
+    if (transition instanceof CommandTransition<E> commandTransition) {
+      SubsystemManagerFactory.getInstance().unwatchCommand(commandTransition.getCommand());
+    }
+    transition.cancel();
+  }
+
+  private boolean isTransitionFinished() {
+    if (transitionWatched) {
+      return transitionEnded;
+    }
+    return currentTransition.isFinished();
+  }
+
+  /**
+   * @return the state the machine is routing to through intermediate states, or null if it is not
+   *     following a multi-transition route
+   */
+  public final E getRouteTarget() {
+    return routeTarget;
+  }
+
+  private void cancelStateCommand() {
+    Command prevCommand = stateCommands[currentState.ordinal()];
+    if (prevCommand != null && prevCommand.isScheduled()) prevCommand.cancel();
   }
 
   /**
@@ -341,7 +619,7 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
    * @param command the command to run upon reaching the state
    */
   public final void requestTransition(E state, Command command) {
-    stateCommands.put(state, command);
+    stateCommands[state.ordinal()] = command;
     requestTransition(state);
   }
 
@@ -422,18 +700,33 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
   /**
    * Get the current flags of a state
    *
-   * @return the current flags
+   * @return a read-only view of the current flags
    */
   public final Set<E> getCurrentFlags() {
-    return currentFlags;
+    return currentFlagsView;
+  }
+
+  /**
+   * Get the current flags of a state as a bitmask. Only available when the machine has at most
+   * {@link DirectionalEnumGraph#MAX_MASK_VERTICES} states.
+   *
+   * @return a mask where bit n is set when the state with ordinal n is a flag
+   * @throws IllegalStateException if the machine has too many states for a mask
+   */
+  public final long getFlagMask() {
+    if (!useFlagMask) {
+      throw new IllegalStateException(
+          getName() + " has " + states.length + " states, too many for a flag mask");
+    }
+    return flagMask;
   }
 
   public final String[] getCurrentFlagsAsArray() {
-    int n = getCurrentFlags().size();
+    int n = currentFlags.size();
     String arr[] = new String[n];
 
     int i = 0;
-    for (E flag : getCurrentFlags()) {
+    for (E flag : currentFlags) {
       arr[i] = flag.toString();
       i++;
     }
@@ -448,7 +741,8 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
    * @return whether the state is currently a flag or not
    */
   public final boolean isFlag(E state) {
-    return getCurrentFlags().contains(state);
+    if (!useFlagMask) return currentFlags.contains(state);
+    return (flagMask & (1L << state.ordinal())) != 0;
   }
 
   /**
@@ -457,7 +751,8 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
    * @param flag the flag state
    */
   public final void setFlag(E flag) {
-    currentFlags.add(flag);
+    if (currentFlags.add(flag)) flagChangeCount++;
+    if (useFlagMask) flagMask |= 1L << flag.ordinal();
   }
 
   /**
@@ -476,7 +771,8 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
    * @param flag the flag state to clear
    */
   public final void clearFlag(E flag) {
-    currentFlags.remove(flag);
+    if (currentFlags.remove(flag)) flagChangeCount++;
+    if (useFlagMask) flagMask &= ~(1L << flag.ordinal());
   }
 
   public final Command clearFlagCommand(E flag) {
@@ -485,41 +781,86 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
 
   /** Clear all states that are currently flags */
   public final void clearFlags() {
+    if (!currentFlags.isEmpty()) flagChangeCount++;
     currentFlags.clear();
+    flagMask = 0;
   }
 
   @Override
   public void periodic() {
+    long periodicStart = profile != null ? System.nanoTime() : 0;
     E chooserRequest = stateChooser.get();
 
     if (enabled) {
-      updateTransitioning();
+      // In event mode, idle machines skip transition processing until a callback wakes them
+      boolean polling = isTransitioning() && !transitionWatched;
+      if (!eventDriven || wakeRequested || polling) {
+        wakeRequested = false;
+        updateTransitioning();
+      }
 
       if (lastChooserRequest != chooserRequest) {
         requestTransition(chooserRequest);
       }
     }
 
+    long phaseStart = endPhase(Phase.TRANSITIONS, periodicStart);
     recordLogs();
+    phaseStart = endPhase(Phase.LOGGING, phaseStart);
+    logAdditionalOutputs();
+    phaseStart = endPhase(Phase.ADDITIONAL_LOGGING, phaseStart);
     update();
+    endPhase(Phase.UPDATE, phaseStart);
+    endPhase(Phase.TOTAL, periodicStart);
 
     lastChooserRequest = chooserRequest;
   }
 
-  private void recordLogs() {
-    Logger.recordOutput(
-        getName() + "/desired",
-        isTransitioning() ? getCurrentTransition().getEndState().name() : getState().name());
+  /**
+   * Record the cost of a phase of periodic() if the machine is being profiled
+   *
+   * @param phase the phase that just ended
+   * @param start the time the phase started, from {@link System#nanoTime()}
+   * @return the time the phase ended, to be used as the start of the next phase
+   */
+  private long endPhase(Phase phase, long start) {
+    if (profile == null) return 0;
+    long now = System.nanoTime();
+    profile.record(phase, now - start);
+    return now;
+  }
+
+  void setProfile(MachineProfile profile) {
+    this.profile = profile;
+  }
 
-    Logger.recordOutput(getName() + "/state", getState().toString());
+  MachineProfile getProfile() {
+    return profile;
+  }
 
-    Logger.recordOutput(getName() + "/transitioning", isTransitioning());
-    Logger.recordOutput(getName() + "/flags", getCurrentFlagsAsArray());
-    Logger.recordOutput(getName(), getCurrentFlagsAsArray());
+  /**
+   * @return the most recent transitions of the machine
+   */
+  public final TransitionHistory<E> getHistory() {
+    return history;
+  }
 
-    Logger.recordOutput(getName() + "/enabled", enabled);
+  /** Log the statistics of every transition that has run. Called at a low rate by the manager. */
+  void logTransitionStats() {
+    transitionStatsLogger.log(transitionGraph);
+  }
 
-    logAdditionalOutputs();
+  private void recordLogs() {
+    history.flush();
+    stateLogger.log(
+        routeTarget != null
+            ? routeTarget
+            : isTransitioning() ? getCurrentTransition().getEndState() : getState(),
+        getState(),
+        isTransitioning(),
+        flagChangeCount,
+        currentFlags,
+        enabled);
   }
 
   protected final void setState(E state) {
@@ -527,33 +868,62 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
 
     currentState = state;
     clearFlags();
-    if (stateCommands.containsKey(state)) {
-      stateCommands.get(state).schedule();
+    Command stateCommand = stateCommands[state.ordinal()];
+    if (stateCommand != null) {
+      stateCommand.schedule();
     }
   }
 
   private void updateTransitioning() {
-    if (isTransitioning() && currentTransition.isFinished()) {
-      setState(currentTransition.getEndState());
+    if (isTransitioning() && isTransitionFinished()) {
+      E reached = currentTransition.getEndState();
+      currentTransition.recordCompletion(transitionTimer.get());
+      history.add(currentState, reached, Cause.COMPLETE);
       currentTransition = null;
       transitionTimer.stop();
       transitionTimer.reset();
+
+      E nextHop =
+          routeTarget != null && requestQueue.isEmpty()
+              ? transitionGraph.getNextHop(reached, routeTarget)
+              : null;
+      if (nextHop != null) {
+        // Pass through the intermediate state without running its state command
+        currentState = reached;
+        clearFlags();
+        startTransition(transitionGraph.getEdge(reached, nextHop), Cause.ROUTE);
+        transitionTimer.start();
+      } else {
+        // A waiting request starts from the reached state without running its state command
+        routeTarget = null;
+        if (!startQueuedRequest(reached)) {
+          setState(reached);
+        }
+      }
     }
 
-    if (queuedTransition != null
-        && (!isTransitioning() || transitionTimer.hasElapsed(transitionTimeOut))) {
+    // Requests that can only start from the end state wait for the transition to finish
+    if (isTransitioning()
+        && !requestQueue.isEmpty()
+        && transitionTimer.hasElapsed(currentTransition.getTimeout())
+        && canPreempt()) {
       forceChangeTransition();
     }
   }
 
+  /** Cancel the current transition and start the next waiting request from the start state */
   private void forceChangeTransition() {
-
-    if (currentTransition != null) currentTransition.cancel();
-    currentTransition = queuedTransition;
-    currentTransition.execute();
-    queuedTransition = null;
-    transitionTimer.reset();
-    clearFlags();
+    currentTransition.recordPreemption(transitionTimer.get());
+    history.add(currentState, currentTransition.getEndState(), Cause.PREEMPT);
+    cancelTransition(currentTransition);
+    currentTransition = null;
+    routeTarget = null;
+    transitionTimer.stop();
+    if (!startQueuedRequest(currentState)) {
+      // No waiting request needs a transition from the start state, so stay there
+      transitionTimer.reset();
+      setState(currentState);
+    }
   }
 
   public final String toString() {
@@ -566,7 +936,43 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
   }
 
   public final void determineState() {
-    if (!isDetermined()) determineSelf();
+    if (!isDetermined()) determine();
+  }
+
+  /** Run determineSelf() and record the state it determined */
+  private void determine() {
+    E before = currentState;
+    determineSelf();
+    if (currentState != before) history.add(before, currentState, Cause.DETERMINE);
+  }
+
+  /**
+   * @return the generation to pass to {@link #applyDeterminedState(Enum, int)}
+   */
+  final int getDeterminationGeneration() {
+    return determinationGeneration;
+  }
+
+  /**
+   * Apply the result of an asynchronous determination on the main thread. The result is dropped if
+   * the machine was disabled since the determination started, or if it already left the
+   * undetermined state on its own.
+   *
+   * @param state the determined state, or null to fall back to {@link #determineSelf()}
+   * @param generation the generation when the determination started
+   * @return whether the result was applied
+   */
+  final boolean applyDeterminedState(E state, int generation) {
+    if (generation != determinationGeneration || isDetermined() || isTransitioning()) {
+      return false;
+    }
+    if (state == null) {
+      determine();
+    } else {
+      setState(state);
+      history.add(undeterminedState, state, Cause.DETERMINE);
+    }
+    return true;
   }
 
   protected void update() {}
@@ -577,6 +983,29 @@ public abstract class StateMachine<E extends Enum<E>> extends SubsystemBase {
    */
   protected abstract void determineSelf();
 
+  /**
+   * User-implemented method to opt into asynchronous determination. When this returns true, {@link
+   * SubsystemManager#prepSubsystems()} calls {@link #computeDeterminedState()} on a background
+   * thread instead of calling {@link #determineSelf()} on the main thread.
+   *
+   * @return whether the machine supports asynchronous determination
+   */
+  protected boolean supportsAsyncDetermination() {
+    return false;
+  }
+
+  /**
+   * User-implemented method to compute the determined state away from the main thread. This runs on
+   * a background thread, so it may block on hardware reads but must not schedule commands, change
+   * the state, or touch anything the main thread writes. The result is applied with setState() on
+   * the main thread.
+   *
+   * @return the determined state, or null to call {@link #determineSelf()} on the main thread
+   */
+  protected E computeDeterminedState() {
+    return null;
+  }
+
   // Override this to any extra logged values to the logger in this method
   protected void logAdditionalOutputs() {}
 
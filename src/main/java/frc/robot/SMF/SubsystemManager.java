@@ -1,13 +1,216 @@
 package frc.robot.SMF;
 
 import edu.wpi.first.util.sendable.Sendable;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.SMF.profiling.MachineProfile;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.littletonrobotics.junction.Logger;
 
 public class SubsystemManager {
+  private static final double TIMER_WHEEL_TICK = 0.02; // One robot loop
+  private static final int TIMER_WHEEL_SLOTS = 256; // About five seconds per revolution
+
   private final List<StateMachine<?>> subsystems = new ArrayList<>();
+  private final TimerWheel timerWheel = new TimerWheel(TIMER_WHEEL_TICK, TIMER_WHEEL_SLOTS);
+  private final Map<Command, Runnable> commandEndListeners = new IdentityHashMap<>();
+
+  // Every machine's periodic() is profiled, results and transition statistics are published about
+  // once a second
+  private static final int PROFILE_WINDOW_LOOPS = 100;
+  private static final int PROFILE_PUBLISH_LOOPS = 50;
+  private static final double DEFAULT_PROFILE_BUDGET_MS = 1.0;
+  private double profileBudgetMs = DEFAULT_PROFILE_BUDGET_MS;
+  private int loopsSincePublish = 0;
+
+  // Asynchronous determination runs on a small pool, results are applied by periodic()
+  private static final int DETERMINATION_THREADS = 2;
+  private static final int DETERMINATION_QUEUE_CAPACITY = 32;
+  private final ExecutorService determinationExecutor =
+      new ThreadPoolExecutor(
+          DETERMINATION_THREADS,
+          DETERMINATION_THREADS,
+          0L,
+          TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(DETERMINATION_QUEUE_CAPACITY),
+          runnable -> {
+            Thread thread = new Thread(runnable, "SMF Determination");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private final Queue<Determination<?>> completedDeterminations = new ConcurrentLinkedQueue<>();
 
-  SubsystemManager() {}
+  /** The result of determining one machine on the background pool */
+  private static class Determination<E extends Enum<E>> {
+    final StateMachine<E> machine;
+    final int generation;
+    final long submitNanos = System.nanoTime();
+    E result;
+    long computeNanos;
+    Throwable error;
+
+    Determination(StateMachine<E> machine) {
+      this.machine = machine;
+      generation = machine.getDeterminationGeneration();
+    }
+  }
+
+  SubsystemManager() {
+    CommandScheduler.getInstance().onCommandFinish(this::onCommandEnd);
+    CommandScheduler.getInstance().onCommandInterrupt(this::onCommandEnd);
+  }
+
+  /**
+   * Call in robotPeriodic(), after the command scheduler runs. Expires timeouts on the wheel and
+   * applies the results of asynchronous determinations.
+   */
+  public void periodic() {
+    timerWheel.advance();
+
+    Determination<?> determination;
+    while ((determination = completedDeterminations.poll()) != null) {
+      applyDetermination(determination);
+    }
+
+    if (++loopsSincePublish >= PROFILE_PUBLISH_LOOPS) {
+      loopsSincePublish = 0;
+      publishStats();
+    }
+  }
+
+  private void publishStats() {
+    StateMachine<?> overBudget = null;
+    for (int i = 0; i < subsystems.size(); i++) {
+      StateMachine<?> sm = subsystems.get(i);
+      if (sm.getProfile().publish()) overBudget = sm;
+      sm.logTransitionStats();
+    }
+    if (overBudget != null) {
+      dumpAllHistories(overBudget.getName() + " over loop time budget");
+    }
+  }
+
+  /**
+   * Log the recent transition history of every registered machine as struct arrays under
+   * SubsystemManager/HistoryDump, and print it to the driver station console. Called automatically
+   * when a machine goes over its loop time budget.
+   *
+   * @param reason why the histories are being dumped
+   */
+  public void dumpAllHistories(String reason) {
+    StringBuilder text = new StringBuilder("State machine histories (" + reason + ")\n");
+    for (StateMachine<?> sm : subsystems) {
+      sm.getHistory().dump("SubsystemManager/HistoryDump/" + sm.getName());
+      text.append(sm.getName()).append(":\n").append(sm.getHistory().describe());
+    }
+    Logger.recordOutput("SubsystemManager/HistoryDump/Reason", reason);
+    DriverStation.reportWarning(text.toString(), false);
+  }
+
+  /**
+   * Set the loop time budget of every registered machine, including machines registered later. An
+   * alert is raised while the p99 cost of a machine's periodic() is over its budget.
+   *
+   * @param budgetMs the budget in milliseconds
+   */
+  public void setProfilingBudget(double budgetMs) {
+    profileBudgetMs = budgetMs;
+    for (StateMachine<?> sm : subsystems) {
+      sm.getProfile().setBudgetMs(budgetMs);
+    }
+  }
+
+  /**
+   * Set the loop time budget of one registered machine. An alert is raised while the p99 cost of
+   * the machine's periodic() is over its budget.
+   *
+   * @param subsystem the machine to set the budget of
+   * @param budgetMs the budget in milliseconds
+   */
+  public void setProfilingBudget(StateMachine<?> subsystem, double budgetMs) {
+    if (subsystem.getProfile() != null) subsystem.getProfile().setBudgetMs(budgetMs);
+  }
+
+  private <E extends Enum<E>> void startDetermination(StateMachine<E> machine) {
+    Determination<E> determination = new Determination<>(machine);
+    try {
+      determinationExecutor.execute(
+          () -> {
+            long start = System.nanoTime();
+            try {
+              determination.result = machine.computeDeterminedState();
+            } catch (Throwable e) {
+              determination.error = e;
+            }
+            determination.computeNanos = System.nanoTime() - start;
+            // The queue publishes the results safely to the main thread
+            completedDeterminations.add(determination);
+          });
+    } catch (RejectedExecutionException e) {
+      // Too many determinations pending, determine on the main thread instead
+      machine.determineState();
+    }
+  }
+
+  private <E extends Enum<E>> void applyDetermination(Determination<E> determination) {
+    StateMachine<E> machine = determination.machine;
+    if (determination.error != null) {
+      DriverStation.reportError(
+          "Failed to determine " + machine.getName() + ": " + determination.error,
+          determination.error.getStackTrace());
+    }
+
+    // A failed determination falls back to determineSelf() on the main thread
+    boolean applied =
+        machine.applyDeterminedState(
+            determination.error == null ? determination.result : null, determination.generation);
+
+    String key = "SubsystemManager/Determination/" + machine.getName();
+    Logger.recordOutput(key + "/ComputeMs", determination.computeNanos / 1e6);
+    Logger.recordOutput(key + "/LatencyMs", (System.nanoTime() - determination.submitNanos) / 1e6);
+    Logger.recordOutput(key + "/Applied", applied);
+  }
+
+  /**
+   * @return the timer wheel shared by every state machine, advanced by {@link #periodic()}
+   */
+  public TimerWheel getTimerWheel() {
+    return timerWheel;
+  }
+
+  /**
+   * Run a callback once the next time a command finishes or is interrupted. Replaces any callback
+   * already waiting on the same command.
+   *
+   * @param command the command to watch
+   * @param onEnd the callback to run
+   */
+  public void watchCommand(Command command, Runnable onEnd) {
+    commandEndListeners.put(command, onEnd);
+  }
+
+  /**
+   * Stop waiting for a command to end
+   *
+   * @param command the command to stop watching
+   */
+  public void unwatchCommand(Command command) {
+    commandEndListeners.remove(command);
+  }
+
+  private void onCommandEnd(Command command) {
+    if (commandEndListeners.isEmpty()) return;
+    Runnable onEnd = commandEndListeners.remove(command);
+    if (onEnd != null) onEnd.run();
+  }
 
   /**
    * Add a subsystem and its children to be tracked by the SubsystemManager instance. It will
@@ -33,6 +236,8 @@ public class SubsystemManager {
   private void registerSubsystem(StateMachine<?> subsystem, String subtable, boolean sendToNT) {
     if (!subsystems.contains(subsystem)) {
       subsystems.add(subsystem);
+      subsystem.setProfile(
+          new MachineProfile(subsystem.getName(), PROFILE_WINDOW_LOOPS, profileBudgetMs));
       if (sendToNT) sendOnNt(subsystem, subtable);
     }
 
@@ -118,9 +323,19 @@ public class SubsystemManager {
     }
   }
 
-  /** Enable all subsystems and determine all subsystems */
+  /**
+   * Enable all subsystems and determine all subsystems. Subsystems that support asynchronous
+   * determination are enabled right away and determined on a background pool, and their state is
+   * applied by {@link #periodic()} once it is known.
+   */
   public void prepSubsystems() {
-    enableAllSubsystems();
-    determineAllSubsystems();
+    for (StateMachine<?> sm : subsystems) {
+      if (sm.supportsAsyncDetermination() && !sm.isDetermined()) {
+        sm.enable(false);
+        startDetermination(sm);
+      } else {
+        sm.enable();
+      }
+    }
   }
 }
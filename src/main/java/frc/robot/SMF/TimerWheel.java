@@ -0,0 +1,114 @@
+package frc.robot.SMF;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Hashed timer wheel for scheduling timeouts with a resolution of one tick. Timeouts are intrusive
+ * list nodes owned by the caller, so scheduling, cancelling, and expiring a timeout never
+ * allocates, and advancing the wheel only visits the slots for the ticks that passed.
+ */
+public class TimerWheel {
+  /** A callback that can be scheduled on a timer wheel. Create once and reuse. */
+  public static final class Timeout {
+    private final Runnable callback;
+    private long deadlineTick;
+    private Timeout previous;
+    private Timeout next;
+    private boolean scheduled = false;
+
+    /**
+     * @param callback the callback to run when the timeout expires
+     */
+    public Timeout(Runnable callback) {
+      this.callback = callback;
+    }
+
+    /**
+     * @return whether the timeout is waiting to expire
+     */
+    public boolean isScheduled() {
+      return scheduled;
+    }
+  }
+
+  private final double tickSecs;
+  private final Timeout[] slots; // Head of the list of timeouts in each slot
+  private long currentTick;
+
+  /**
+   * Create a new timer wheel
+   *
+   * @param tickSecs the resolution of the wheel in seconds
+   * @param slotCount the number of slots, timeouts further than one revolution away are still
+   *     supported but are visited once per revolution
+   */
+  public TimerWheel(double tickSecs, int slotCount) {
+    this.tickSecs = tickSecs;
+    slots = new Timeout[slotCount];
+    currentTick = (long) Math.floor(Timer.getFPGATimestamp() / tickSecs);
+  }
+
+  /**
+   * Schedule a timeout, rescheduling it if it is already scheduled
+   *
+   * @param timeout the timeout to schedule
+   * @param delaySecs how long until the timeout expires, rounded up to the next tick
+   */
+  public void schedule(Timeout timeout, double delaySecs) {
+    cancel(timeout);
+    long deadlineTick = (long) Math.ceil((Timer.getFPGATimestamp() + delaySecs) / tickSecs);
+    timeout.deadlineTick = Math.max(currentTick + 1, deadlineTick);
+    int slot = (int) (timeout.deadlineTick % slots.length);
+    timeout.previous = null;
+    timeout.next = slots[slot];
+    if (slots[slot] != null) slots[slot].previous = timeout;
+    slots[slot] = timeout;
+    timeout.scheduled = true;
+  }
+
+  /**
+   * Cancel a timeout. Does nothing if the timeout is not scheduled.
+   *
+   * @param timeout the timeout to cancel
+   */
+  public void cancel(Timeout timeout) {
+    if (!timeout.scheduled) return;
+    int slot = (int) (timeout.deadlineTick % slots.length);
+    if (timeout.previous != null) {
+      timeout.previous.next = timeout.next;
+    } else {
+      slots[slot] = timeout.next;
+    }
+    if (timeout.next != null) timeout.next.previous = timeout.previous;
+    timeout.previous = null;
+    timeout.next = null;
+    timeout.scheduled = false;
+  }
+
+  /** Advance the wheel to the current time and run the callback of every timeout that expired */
+  public void advance() {
+    long targetTick = (long) Math.floor(Timer.getFPGATimestamp() / tickSecs);
+    if (targetTick <= currentTick) return;
+
+    // Timeouts scheduled by a callback always land after the target tick
+    long previousTick = currentTick;
+    currentTick = targetTick;
+
+    // Every slot is visited at most once, even after a long gap between calls
+    long steps = Math.min(targetTick - previousTick, slots.length);
+    for (long step = 1; step <= steps; step++) {
+      int slot = (int) ((previousTick + step) % slots.length);
+      Timeout timeout = slots[slot];
+      while (timeout != null) {
+        if (timeout.deadlineTick <= targetTick) {
+          cancel(timeout);
+          timeout.callback.run();
+          // The callback may have changed this slot, so start over from its head
+          timeout = slots[slot];
+        } else {
+          timeout = timeout.next;
+        }
+      }
+    }
+  }
+}
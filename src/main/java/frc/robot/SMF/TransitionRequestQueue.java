@@ -0,0 +1,216 @@
+package frc.robot.SMF;
+
+import frc.robot.SMF.graph.DirectionalEnumGraph;
+
+/**
+ * Fixed-capacity queue of requested states, stored as ordinals. Requests only name the target
+ * state, so the machine can resolve each one against the state it actually starts from when it is
+ * taken off the queue. How new requests combine with the waiting ones is set by a {@link Policy}.
+ * Nothing is allocated after construction. Waiting states are tracked in a bitmask when the enum
+ * fits in one, and found by scanning the queue otherwise.
+ */
+public class TransitionRequestQueue<E extends Enum<E>> {
+  /** How a new request combines with the requests already waiting */
+  public enum Policy {
+    /** Only the most recent request is kept */
+    LATEST_WINS,
+    /**
+     * Requests are taken in order, a request for a state that is already waiting is dropped, and
+     * the oldest request is dropped when the queue is full
+     */
+    DROP_DUPLICATES,
+    /**
+     * The request with the highest priority is taken first, oldest first among equal priorities. A
+     * request for a state that is already waiting raises its priority instead of adding an entry,
+     * and the lowest priority request is dropped when the queue is full.
+     */
+    PRIORITY
+  }
+
+  private final E[] states;
+  private final int[] ordinals; // Oldest first
+  private final int[] priorities;
+  private final boolean useQueuedMask;
+  private long queuedMask = 0; // Bit n is set when the state at ordinal n is waiting
+  private int count = 0;
+  private long droppedCount = 0;
+  private Policy policy;
+
+  /**
+   * Create a new queue
+   *
+   * @param enumType the class of enums used for the state
+   * @param capacity the number of requests that can wait at once
+   * @param policy how new requests combine with the waiting ones
+   */
+  public TransitionRequestQueue(Class<E> enumType, int capacity, Policy policy) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Request queue capacity must be positive");
+    }
+    states = enumType.getEnumConstants();
+    useQueuedMask = DirectionalEnumGraph.fitsInMask(states.length);
+    ordinals = new int[capacity];
+    priorities = new int[capacity];
+    this.policy = policy;
+  }
+
+  /**
+   * Change how new requests combine with the waiting ones. Requests that are already waiting are
+   * kept.
+   *
+   * @param policy the new policy
+   */
+  public void setPolicy(Policy policy) {
+    this.policy = policy;
+  }
+
+  /**
+   * @return how new requests combine with the waiting ones
+   */
+  public Policy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * Add a request, combining it with the waiting requests according to the policy
+   *
+   * @param state the requested state
+   * @param priority the priority of the request, only used by {@link Policy#PRIORITY}
+   */
+  public void add(E state, int priority) {
+    int ordinal = state.ordinal();
+    switch (policy) {
+      case LATEST_WINS -> {
+        if (count > 0) droppedCount += count;
+        clear();
+        append(ordinal, priority);
+      }
+      case DROP_DUPLICATES -> {
+        if (contains(ordinal)) {
+          droppedCount++;
+          return;
+        }
+        if (count == ordinals.length) {
+          removeAt(0);
+          droppedCount++;
+        }
+        append(ordinal, priority);
+      }
+      case PRIORITY -> {
+        if (contains(ordinal)) {
+          int index = indexOf(ordinal);
+          priorities[index] = Math.max(priorities[index], priority);
+          droppedCount++;
+          return;
+        }
+        if (count == ordinals.length) {
+          int lowest = indexOfLowestPriority();
+          if (priorities[lowest] >= priority) {
+            droppedCount++;
+            return;
+          }
+          removeAt(lowest);
+          droppedCount++;
+        }
+        append(ordinal, priority);
+      }
+    }
+  }
+
+  /**
+   * Remove and return the next request according to the policy
+   *
+   * @return the next requested state, or null if the queue is empty
+   */
+  public E poll() {
+    if (count == 0) return null;
+    int index = policy == Policy.PRIORITY ? indexOfHighestPriority() : 0;
+    E state = states[ordinals[index]];
+    removeAt(index);
+    return state;
+  }
+
+  /**
+   * Look at a waiting request without removing it
+   *
+   * @param index the position of the request, oldest first, from 0 to {@link #size()} - 1
+   * @return the requested state
+   */
+  public E get(int index) {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    return states[ordinals[index]];
+  }
+
+  /**
+   * @return whether no requests are waiting
+   */
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  /**
+   * @return the number of requests waiting
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * @return the number of requests dropped or merged into a waiting request since the queue was
+   *     created
+   */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+
+  /** Remove every waiting request */
+  public void clear() {
+    count = 0;
+    queuedMask = 0;
+  }
+
+  private boolean contains(int ordinal) {
+    if (!useQueuedMask) return indexOf(ordinal) >= 0;
+    return (queuedMask & (1L << ordinal)) != 0;
+  }
+
+  private void append(int ordinal, int priority) {
+    ordinals[count] = ordinal;
+    priorities[count] = priority;
+    queuedMask |= 1L << ordinal;
+    count++;
+  }
+
+  private void removeAt(int index) {
+    queuedMask &= ~(1L << ordinals[index]);
+    count--;
+    System.arraycopy(ordinals, index + 1, ordinals, index, count - index);
+    System.arraycopy(priorities, index + 1, priorities, index, count - index);
+  }
+
+  private int indexOf(int ordinal) {
+    for (int i = 0; i < count; i++) {
+      if (ordinals[i] == ordinal) return i;
+    }
+    return -1;
+  }
+
+  private int indexOfHighestPriority() {
+    int best = 0;
+    for (int i = 1; i < count; i++) {
+      if (priorities[i] > priorities[best]) best = i;
+    }
+    return best;
+  }
+
+  private int indexOfLowestPriority() {
+    // The newest of the lowest priority requests is dropped first
+    int worst = count - 1;
+    for (int i = count - 2; i >= 0; i--) {
+      if (priorities[i] < priorities[worst]) worst = i;
+    }
+    return worst;
+  }
+}
@@ -2,17 +2,52 @@ package frc.robot.SMF.graph;
 
 import frc.robot.SMF.transitions.TransitionBase;
 import java.util.*;
+import java.util.function.Consumer;
 
 public class DirectionalEnumGraph<V extends Enum<V>, T extends TransitionBase<? extends Enum<V>>> {
+  /// Graphs and state machines with at most this many vertices keep each set of vertices in a long
+  public static final int MAX_MASK_VERTICES = Long.SIZE;
+
   // Array where the index [1][2] = TransitionBase from state at ordinal 1 to state at ordinal 2
   private final Object[][] adjacencyMap;
-  private final Class<V> enumType;
+  private final V[] vertices;
+
+  // Each table holds one row of bits per vertex, and each row is words longs long. Bit n of the row
+  // of ordinal 1 in outgoing is set when there is an edge from ordinal 1 to ordinal n, and in
+  // incoming when there is an edge from ordinal n to ordinal 1.
+  private final int words;
+  private final long[] outgoing;
+  private final long[] incoming;
+
+  // Array where the index [1][2] = ordinal of the first state on the shortest route from the state
+  // at ordinal 1 to the state at ordinal 2, or -1 if there is no route. Rebuilt lazily after edits.
+  private final int[][] nextHop;
+  // Bit n of the row of ordinal 1 is set when ordinal n can be reached from ordinal 1, other than
+  // ordinal 1 itself
+  private final long[] reachable;
+  private boolean routesDirty = true;
 
   public DirectionalEnumGraph(Class<V> enumType) {
-    int c = enumType.getEnumConstants().length;
-    this.enumType = enumType;
+    vertices = enumType.getEnumConstants();
+    int c = vertices.length;
 
     adjacencyMap = new Object[c][c];
+    words = Math.max(1, (c + Long.SIZE - 1) / Long.SIZE);
+    outgoing = new long[c * words];
+    incoming = new long[c * words];
+    nextHop = new int[c][c];
+    reachable = new long[c * words];
+  }
+
+  /**
+   * Whether a set of vertices fits in a single long bitmask. Larger graphs and state machines fall
+   * back to slower storage, and the mask accessors are not available for them.
+   *
+   * @param vertexCount the number of vertices, or states of a state machine
+   * @return whether the vertices fit in a long bitmask
+   */
+  public static boolean fitsInMask(int vertexCount) {
+    return vertexCount <= MAX_MASK_VERTICES;
   }
 
   /**
@@ -36,7 +71,12 @@ public class DirectionalEnumGraph<V extends Enum<V>, T extends TransitionBase<?
   }
 
   private V fromOrdinal(int ordinal) {
-    return enumType.getEnumConstants()[ordinal];
+    return vertices[ordinal];
+  }
+
+  /** Index of the long holding the bit of a column in a row of a bit table */
+  private int wordIndex(int row, int column) {
+    return row * words + column / Long.SIZE;
   }
 
   /**
@@ -46,12 +86,39 @@ public class DirectionalEnumGraph<V extends Enum<V>, T extends TransitionBase<?
    * @param transition The transition to set to the graph
    */
   public void setEdge(T transition) {
-    adjacencyMap[transition.getStartState().ordinal()][transition.getEndState().ordinal()] =
-        transition;
+    int start = transition.getStartState().ordinal();
+    int end = transition.getEndState().ordinal();
+    adjacencyMap[start][end] = transition;
+    outgoing[wordIndex(start, end)] |= 1L << end;
+    incoming[wordIndex(end, start)] |= 1L << start;
+    routesDirty = true;
   }
 
   public void removeEdge(V start, V end) {
-    adjacencyMap[start.ordinal()][end.ordinal()] = null;
+    removeEdge(start.ordinal(), end.ordinal());
+  }
+
+  private void removeEdge(int start, int end) {
+    adjacencyMap[start][end] = null;
+    outgoing[wordIndex(start, end)] &= ~(1L << end);
+    incoming[wordIndex(end, start)] &= ~(1L << start);
+    routesDirty = true;
+  }
+
+  /**
+   * Remove every edge leaving a vertex
+   *
+   * @param start the vertex to remove the edges from
+   */
+  public void removeOutgoingEdges(V start) {
+    int row = start.ordinal() * words;
+    for (int word = 0; word < words; word++) {
+      long bits = outgoing[row + word];
+      while (bits != 0) {
+        removeEdge(start.ordinal(), word * Long.SIZE + Long.numberOfTrailingZeros(bits));
+        bits &= bits - 1;
+      }
+    }
   }
 
   /**
@@ -73,24 +140,197 @@ public class DirectionalEnumGraph<V extends Enum<V>, T extends TransitionBase<?
    * @return the edges of the graph that match the conditions
    */
   public List<T> getEdges(V vertex, EdgeType t) {
-    List<T> outgoing = new ArrayList<>();
-    List<T> incoming = new ArrayList<>();
-
-    for (int i = 0; i < adjacencyMap.length; i++) {
-      T in = getAsEdge(i, vertex.ordinal());
-      T out = getAsEdge(vertex.ordinal(), i);
-      if (out != null) outgoing.add(out);
-      if (in != null) incoming.add(in);
+    List<T> edges =
+        new ArrayList<>(
+            switch (t) {
+              case Incoming -> getInDegree(vertex);
+              case Outgoing -> getOutDegree(vertex);
+              default -> getOutDegree(vertex) + getInDegree(vertex);
+            });
+    if (t != EdgeType.Incoming) forEachOutgoing(vertex, edges::add);
+    if (t != EdgeType.Outgoing) forEachIncoming(vertex, edges::add);
+    return edges;
+  }
+
+  /**
+   * Runs an action on every edge leaving a vertex, in ordinal order of the end vertex. Does not
+   * allocate.
+   *
+   * @param vertex the vertex to search
+   * @param action the action to run on each edge
+   */
+  public void forEachOutgoing(V vertex, Consumer<? super T> action) {
+    int start = vertex.ordinal();
+    int row = start * words;
+    for (int word = 0; word < words; word++) {
+      long bits = outgoing[row + word];
+      while (bits != 0) {
+        action.accept(getAsEdge(start, word * Long.SIZE + Long.numberOfTrailingZeros(bits)));
+        bits &= bits - 1;
+      }
     }
+  }
+
+  /**
+   * Runs an action on every edge entering a vertex, in ordinal order of the start vertex. Does not
+   * allocate.
+   *
+   * @param vertex the vertex to search
+   * @param action the action to run on each edge
+   */
+  public void forEachIncoming(V vertex, Consumer<? super T> action) {
+    int end = vertex.ordinal();
+    int row = end * words;
+    for (int word = 0; word < words; word++) {
+      long bits = incoming[row + word];
+      while (bits != 0) {
+        action.accept(getAsEdge(word * Long.SIZE + Long.numberOfTrailingZeros(bits), end));
+        bits &= bits - 1;
+      }
+    }
+  }
+
+  /**
+   * Runs an action on every edge of the graph, ordered by start vertex then end vertex. Does not
+   * allocate.
+   *
+   * @param action the action to run on each edge
+   */
+  public void forEachEdge(Consumer<? super T> action) {
+    for (V vertex : vertices) {
+      forEachOutgoing(vertex, action);
+    }
+  }
+
+  /**
+   * @param vertex the vertex to evaluate
+   * @return the number of edges leaving the vertex
+   */
+  public int getOutDegree(V vertex) {
+    return countBits(outgoing, vertex.ordinal());
+  }
+
+  /**
+   * @param vertex the vertex to evaluate
+   * @return the number of edges entering the vertex
+   */
+  public int getInDegree(V vertex) {
+    return countBits(incoming, vertex.ordinal());
+  }
+
+  private int countBits(long[] table, int ordinal) {
+    int count = 0;
+    for (int word = ordinal * words; word < (ordinal + 1) * words; word++) {
+      count += Long.bitCount(table[word]);
+    }
+    return count;
+  }
+
+  /**
+   * @param vertex the vertex to evaluate
+   * @return a mask where bit n is set when there is an edge from the vertex to ordinal n
+   * @throws IllegalStateException if the graph has more than {@link #MAX_MASK_VERTICES} vertices
+   */
+  public long getOutgoingMask(V vertex) {
+    requireMask();
+    return outgoing[vertex.ordinal()];
+  }
+
+  /**
+   * @param vertex the vertex to evaluate
+   * @return a mask where bit n is set when there is an edge from ordinal n to the vertex
+   * @throws IllegalStateException if the graph has more than {@link #MAX_MASK_VERTICES} vertices
+   */
+  public long getIncomingMask(V vertex) {
+    requireMask();
+    return incoming[vertex.ordinal()];
+  }
+
+  private void requireMask() {
+    if (!fitsInMask(vertices.length)) {
+      throw new IllegalStateException(
+          "Graph has " + vertices.length + " vertices, too many for a mask");
+    }
+  }
+
+  /**
+   * Returns the next state on the shortest route between two vertices, counted in edges. Routes
+   * are computed for every pair of vertices the first time this is called after the graph changes,
+   * so each lookup after that is constant time.
+   *
+   * @param start starting vertex of the route
+   * @param end ending vertex of the route
+   * @return the vertex to go to next, or null if end cannot be reached or start is end
+   */
+  public V getNextHop(V start, V end) {
+    if (routesDirty) {
+      computeRoutes();
+    }
+    int hop = nextHop[start.ordinal()][end.ordinal()];
+    return hop < 0 ? null : fromOrdinal(hop);
+  }
+
+  /**
+   * Whether there is a route of one or more edges between two different vertices. Uses the same
+   * lazily computed tables as {@link #getNextHop(Enum, Enum)} and agrees with it, so a vertex never
+   * has a route to itself and each query is a single bit test.
+   *
+   * @param start starting vertex of the route
+   * @param end ending vertex of the route
+   * @return whether end can be reached from start, false if start is end
+   */
+  public boolean hasRoute(V start, V end) {
+    if (routesDirty) {
+      computeRoutes();
+    }
+    int ordinal = end.ordinal();
+    return (reachable[wordIndex(start.ordinal(), ordinal)] & (1L << ordinal)) != 0;
+  }
+
+  /**
+   * @param start the vertex to evaluate
+   * @return a mask where bit n is set when ordinal n can be reached from the vertex, never
+   *     including the vertex itself
+   * @throws IllegalStateException if the graph has more than {@link #MAX_MASK_VERTICES} vertices
+   */
+  public long getReachableMask(V start) {
+    requireMask();
+    if (routesDirty) {
+      computeRoutes();
+    }
+    return reachable[start.ordinal()];
+  }
 
-    switch (t) {
-      case Incoming:
-        return incoming;
-      case Outgoing:
-        return outgoing;
-      default: // Return both
-        outgoing.addAll(incoming);
-        return outgoing;
+  /** Runs a breadth-first search from every vertex to fill the next-hop and reachability tables */
+  private void computeRoutes() {
+    int c = adjacencyMap.length;
+    int[] queue = new int[c];
+    long[] visited = new long[words];
+    for (int source = 0; source < c; source++) {
+      int[] firstHop = nextHop[source];
+      Arrays.fill(firstHop, -1);
+      Arrays.fill(visited, 0);
+      int row = source * words;
+      Arrays.fill(reachable, row, row + words, 0);
+      visited[source / Long.SIZE] = 1L << source;
+      int head = 0;
+      int tail = 0;
+      queue[tail++] = source;
+      while (head < tail) {
+        int vertex = queue[head++];
+        for (int word = 0; word < words; word++) {
+          long bits = outgoing[vertex * words + word] & ~visited[word];
+          visited[word] |= bits;
+          reachable[row + word] |= bits;
+          while (bits != 0) {
+            int next = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            firstHop[next] = vertex == source ? next : firstHop[vertex];
+            queue[tail++] = next;
+          }
+        }
+      }
     }
+    routesDirty = false;
   }
 }
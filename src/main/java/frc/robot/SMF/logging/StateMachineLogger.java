@@ -0,0 +1,99 @@
+package frc.robot.SMF.logging;
+
+import java.util.Set;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Logs the status of a state machine without allocating. Keys and state names are computed once
+ * when the logger is created, and each value is only written when it changes.
+ */
+public class StateMachineLogger<E extends Enum<E>> {
+  private static final String[] NO_FLAGS = new String[0];
+
+  private final String desiredKey;
+  private final String stateKey;
+  private final String transitioningKey;
+  private final String flagsKey;
+  private final String flagsRootKey;
+  private final String enabledKey;
+  private final String[] stateNames;
+  private final String[] stateStrings;
+
+  private boolean first = true;
+  private E lastDesired;
+  private E lastState;
+  private boolean lastTransitioning;
+  private long lastFlagChangeCount;
+  private boolean lastEnabled;
+  private String[] flagNames = NO_FLAGS;
+
+  /**
+   * Creates a new logger
+   *
+   * @param name the name of the state machine, used as the root of every key
+   * @param enumType the class of enums used for the state
+   */
+  public StateMachineLogger(String name, Class<E> enumType) {
+    desiredKey = name + "/desired";
+    stateKey = name + "/state";
+    transitioningKey = name + "/transitioning";
+    flagsKey = name + "/flags";
+    flagsRootKey = name;
+    enabledKey = name + "/enabled";
+
+    E[] states = enumType.getEnumConstants();
+    stateNames = new String[states.length];
+    stateStrings = new String[states.length];
+    for (E state : states) {
+      stateNames[state.ordinal()] = state.name();
+      stateStrings[state.ordinal()] = state.toString();
+    }
+  }
+
+  /**
+   * Writes every value that changed since the last call
+   *
+   * @param desired the state the machine is heading to
+   * @param state the current state of the machine
+   * @param transitioning whether the machine is transitioning
+   * @param flagChangeCount the number of times the flags have changed
+   * @param flags the current flags, only read when the change count changes
+   * @param enabled whether the machine is enabled
+   */
+  public void log(
+      E desired,
+      E state,
+      boolean transitioning,
+      long flagChangeCount,
+      Set<E> flags,
+      boolean enabled) {
+    if (first || desired != lastDesired) {
+      Logger.recordOutput(desiredKey, stateNames[desired.ordinal()]);
+      lastDesired = desired;
+    }
+    if (first || state != lastState) {
+      Logger.recordOutput(stateKey, stateStrings[state.ordinal()]);
+      lastState = state;
+    }
+    if (first || transitioning != lastTransitioning) {
+      Logger.recordOutput(transitioningKey, transitioning);
+      lastTransitioning = transitioning;
+    }
+    if (first || flagChangeCount != lastFlagChangeCount) {
+      // A new array is only built when the flags change
+      flagNames = flags.isEmpty() ? NO_FLAGS : new String[flags.size()];
+      int i = 0;
+      for (E flag : flags) {
+        flagNames[i++] = stateStrings[flag.ordinal()];
+      }
+      Logger.recordOutput(flagsKey, flagNames);
+      Logger.recordOutput(flagsRootKey, flagNames);
+      lastFlagChangeCount = flagChangeCount;
+    }
+    if (first || enabled != lastEnabled) {
+      Logger.recordOutput(enabledKey, enabled);
+      lastEnabled = enabled;
+    }
+    first = false;
+  }
+}
@@ -0,0 +1,145 @@
+package frc.robot.SMF.logging;
+
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.SMF.logging.TransitionRecord.Cause;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Fixed-size ring of the most recent transition records of a state machine, stored in primitive
+ * arrays. The records added during a loop are logged together as one struct array by {@link
+ * #flush()}, so the log holds one entry per loop with events and none for quiet loops. The whole
+ * ring can be dumped on demand.
+ */
+public class TransitionHistory<E extends Enum<E>> {
+  private final String[] stateNames;
+  private final TransitionRecordStruct struct;
+  private final String recordKey;
+
+  private final double[] timestamps;
+  private final int[] froms;
+  private final int[] tos;
+  private final int[] causes;
+  private int next = 0;
+  private int count = 0;
+  private int unflushed = 0; // Records added since the last flush
+
+  // slices[n - 1] holds n reused records, created the first time n records are flushed at once
+  private final TransitionRecord[][] slices;
+
+  /**
+   * Creates a new history
+   *
+   * @param name the name of the state machine, used as the root of every key
+   * @param enumType the class of enums used for the state
+   * @param capacity the number of records to keep
+   */
+  public TransitionHistory(String name, Class<E> enumType, int capacity) {
+    E[] states = enumType.getEnumConstants();
+    stateNames = new String[states.length];
+    for (E state : states) {
+      stateNames[state.ordinal()] = state.name();
+    }
+    struct = new TransitionRecordStruct(enumType);
+    recordKey = name + "/TransitionHistory";
+
+    timestamps = new double[capacity];
+    froms = new int[capacity];
+    tos = new int[capacity];
+    causes = new int[capacity];
+    slices = new TransitionRecord[capacity][];
+  }
+
+  /**
+   * Add a record, replacing the oldest one if the ring is full. It is logged by the next {@link
+   * #flush()}.
+   *
+   * @param from the state the machine was in or leaving
+   * @param to the state the machine reached or is heading to
+   * @param cause why the record was added
+   */
+  public void add(E from, E to, Cause cause) {
+    double timestamp = Timer.getFPGATimestamp();
+    timestamps[next] = timestamp;
+    froms[next] = from.ordinal();
+    tos[next] = to.ordinal();
+    causes[next] = cause.ordinal();
+    next = (next + 1) % timestamps.length;
+    if (count < timestamps.length) count++;
+    if (unflushed < timestamps.length) unflushed++;
+  }
+
+  /**
+   * Log the records added since the last flush as one struct array, oldest first. Call once per
+   * loop. Nothing is logged if no records were added, and only the newest records that still fit in
+   * the ring are logged if more were added. Does not allocate once each slice size has been used.
+   */
+  public void flush() {
+    if (unflushed == 0) return;
+    TransitionRecord[] slice = slices[unflushed - 1];
+    if (slice == null) {
+      slice = new TransitionRecord[unflushed];
+      for (int i = 0; i < slice.length; i++) {
+        slice[i] = new TransitionRecord();
+      }
+      slices[unflushed - 1] = slice;
+    }
+    int start = (next - unflushed + timestamps.length) % timestamps.length;
+    for (int i = 0; i < unflushed; i++) {
+      int index = (start + i) % timestamps.length;
+      slice[i].set(timestamps[index], froms[index], tos[index], causes[index]);
+    }
+    Logger.recordOutput(recordKey, struct, slice);
+    unflushed = 0;
+  }
+
+  /**
+   * @return the number of records in the ring
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Copy the records in the ring, oldest first. Allocates, so only call it when dumping.
+   *
+   * @return the records in the ring
+   */
+  public TransitionRecord[] toArray() {
+    TransitionRecord[] records = new TransitionRecord[count];
+    int start = (next - count + timestamps.length) % timestamps.length;
+    for (int i = 0; i < count; i++) {
+      int index = (start + i) % timestamps.length;
+      records[i] = new TransitionRecord(timestamps[index], froms[index], tos[index], causes[index]);
+    }
+    return records;
+  }
+
+  /**
+   * Log every record in the ring as a struct array
+   *
+   * @param key the key to log the records to
+   */
+  public void dump(String key) {
+    Logger.recordOutput(key, struct, toArray());
+  }
+
+  /**
+   * Describe every record in the ring, oldest first, one per line
+   *
+   * @return the records as text
+   */
+  public String describe() {
+    StringBuilder text = new StringBuilder();
+    for (TransitionRecord record : toArray()) {
+      text.append(String.format("%.3f", record.timestamp))
+          .append(' ')
+          .append(record.getCause())
+          .append(' ')
+          .append(stateNames[record.from])
+          .append("->")
+          .append(stateNames[record.to])
+          .append('\n');
+    }
+    return text.toString();
+  }
+}
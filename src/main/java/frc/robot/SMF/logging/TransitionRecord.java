@@ -0,0 +1,60 @@
+package frc.robot.SMF.logging;
+
+/**
+ * One entry of a state machine's transition history. States are stored as ordinals, so records can
+ * be reused and logged without allocating.
+ */
+public class TransitionRecord {
+  /** Why the state machine changed or started changing state */
+  public enum Cause {
+    /** A transition was started by a request */
+    REQUEST,
+    /** A transition was started to continue a route through intermediate states */
+    ROUTE,
+    /** A transition was started by a request that waited in the queue */
+    QUEUE,
+    /** A transition finished */
+    COMPLETE,
+    /** A transition was cancelled so that a queued request could start */
+    PREEMPT,
+    /** The machine determined its state */
+    DETERMINE,
+    /** The machine was disabled */
+    DISABLE
+  }
+
+  private static final Cause[] CAUSES = Cause.values();
+
+  /** FPGA timestamp of the record in seconds */
+  public double timestamp;
+
+  /** Ordinal of the state the machine was in or leaving */
+  public int from;
+
+  /** Ordinal of the state the machine reached or is heading to */
+  public int to;
+
+  /** Ordinal of the {@link Cause} of the record */
+  public int cause;
+
+  public TransitionRecord() {}
+
+  public TransitionRecord(double timestamp, int from, int to, int cause) {
+    set(timestamp, from, to, cause);
+  }
+
+  /** Overwrite every field of the record */
+  public void set(double timestamp, int from, int to, int cause) {
+    this.timestamp = timestamp;
+    this.from = from;
+    this.to = to;
+    this.cause = cause;
+  }
+
+  /**
+   * @return the cause of the record
+   */
+  public Cause getCause() {
+    return CAUSES[cause];
+  }
+}
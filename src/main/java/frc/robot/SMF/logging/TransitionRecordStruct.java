@@ -0,0 +1,77 @@
+package frc.robot.SMF.logging;
+
+import edu.wpi.first.util.struct.Struct;
+import java.nio.ByteBuffer;
+
+/**
+ * Struct serialization of {@link TransitionRecord}. The schema names every state of the machine's
+ * enum and every cause, so log viewers show names while each record only takes 11 bytes. One
+ * struct is created per enum type.
+ */
+public class TransitionRecordStruct implements Struct<TransitionRecord> {
+  private final String typeName;
+  private final String schema;
+
+  /**
+   * @param enumType the class of enums used for the state of the machine
+   */
+  public TransitionRecordStruct(Class<? extends Enum<?>> enumType) {
+    // Struct type names must be identifiers, and unique for each schema
+    typeName = "TransitionRecord_" + enumType.getName().replaceAll("[^A-Za-z0-9_]", "_");
+    String states = enumSpec(enumType.getEnumConstants());
+    schema =
+        "double timestamp;"
+            + states
+            + " uint8 from;"
+            + states
+            + " uint8 to;"
+            + enumSpec(TransitionRecord.Cause.values())
+            + " uint8 cause";
+  }
+
+  private static String enumSpec(Enum<?>[] values) {
+    StringBuilder spec = new StringBuilder("enum {");
+    for (Enum<?> value : values) {
+      if (value.ordinal() > 0) spec.append(", ");
+      spec.append(value.name()).append('=').append(value.ordinal());
+    }
+    return spec.append('}').toString();
+  }
+
+  @Override
+  public Class<TransitionRecord> getTypeClass() {
+    return TransitionRecord.class;
+  }
+
+  @Override
+  public String getTypeName() {
+    return typeName;
+  }
+
+  @Override
+  public int getSize() {
+    return kSizeDouble + 3 * kSizeInt8;
+  }
+
+  @Override
+  public String getSchema() {
+    return schema;
+  }
+
+  @Override
+  public TransitionRecord unpack(ByteBuffer bb) {
+    double timestamp = bb.getDouble();
+    int from = Byte.toUnsignedInt(bb.get());
+    int to = Byte.toUnsignedInt(bb.get());
+    int cause = Byte.toUnsignedInt(bb.get());
+    return new TransitionRecord(timestamp, from, to, cause);
+  }
+
+  @Override
+  public void pack(ByteBuffer bb, TransitionRecord value) {
+    bb.putDouble(value.timestamp);
+    bb.put((byte) value.from);
+    bb.put((byte) value.to);
+    bb.put((byte) value.cause);
+  }
+}
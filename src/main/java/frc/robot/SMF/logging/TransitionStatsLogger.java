@@ -0,0 +1,100 @@
+package frc.robot.SMF.logging;
+
+import frc.robot.SMF.graph.DirectionalEnumGraph;
+import frc.robot.SMF.transitions.TransitionBase;
+import java.util.function.Consumer;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Logs the statistics of every transition of a state machine that has run at least once. Each
+ * statistic is logged as one array with an entry per transition, in the order of the names array.
+ * The arrays are only reallocated when the number of transitions that have run changes.
+ */
+public class TransitionStatsLogger<E extends Enum<E>> {
+  private final String namesKey;
+  private final String countKey;
+  private final String meanKey;
+  private final String maxKey;
+  private final String timeoutKey;
+  private final String timeoutsKey;
+  private final String preemptionsKey;
+
+  private String[] names = new String[0];
+  private long[] counts = new long[0];
+  private double[] means = new double[0];
+  private double[] maxes = new double[0];
+  private double[] timeouts = new double[0];
+  private long[] timeoutCounts = new long[0];
+  private long[] preemptionCounts = new long[0];
+
+  private int usedCount;
+  private int index;
+  private final Consumer<TransitionBase<E>> countUsed = this::countUsed;
+  private final Consumer<TransitionBase<E>> fill = this::fill;
+
+  /**
+   * Creates a new logger
+   *
+   * @param name the name of the state machine, used as the root of every key
+   */
+  public TransitionStatsLogger(String name) {
+    String root = name + "/Transitions/";
+    namesKey = root + "Names";
+    countKey = root + "Count";
+    meanKey = root + "MeanMs";
+    maxKey = root + "MaxMs";
+    timeoutKey = root + "TimeoutMs";
+    timeoutsKey = root + "Timeouts";
+    preemptionsKey = root + "Preemptions";
+  }
+
+  /**
+   * Log the statistics of every transition in a graph that has run at least once
+   *
+   * @param graph the transitions of the state machine
+   */
+  public void log(DirectionalEnumGraph<E, TransitionBase<E>> graph) {
+    usedCount = 0;
+    graph.forEachEdge(countUsed);
+    if (usedCount != names.length) {
+      names = new String[usedCount];
+      counts = new long[usedCount];
+      means = new double[usedCount];
+      maxes = new double[usedCount];
+      timeouts = new double[usedCount];
+      timeoutCounts = new long[usedCount];
+      preemptionCounts = new long[usedCount];
+    }
+
+    index = 0;
+    graph.forEachEdge(fill);
+
+    Logger.recordOutput(namesKey, names);
+    Logger.recordOutput(countKey, counts);
+    Logger.recordOutput(meanKey, means);
+    Logger.recordOutput(maxKey, maxes);
+    Logger.recordOutput(timeoutKey, timeouts);
+    Logger.recordOutput(timeoutsKey, timeoutCounts);
+    Logger.recordOutput(preemptionsKey, preemptionCounts);
+  }
+
+  private static boolean hasRun(TransitionBase<?> transition) {
+    return transition.getCompletedCount() > 0 || transition.getPreemptionCount() > 0;
+  }
+
+  private void countUsed(TransitionBase<E> transition) {
+    if (hasRun(transition)) usedCount++;
+  }
+
+  private void fill(TransitionBase<E> transition) {
+    if (!hasRun(transition)) return;
+    names[index] = transition.getName();
+    counts[index] = transition.getCompletedCount();
+    means[index] = transition.getMeanSecs() * 1000.0;
+    maxes[index] = transition.getMaxSecs() * 1000.0;
+    timeouts[index] = transition.getTimeout() * 1000.0;
+    timeoutCounts[index] = transition.getTimeoutCount();
+    preemptionCounts[index] = transition.getPreemptionCount();
+    index++;
+  }
+}
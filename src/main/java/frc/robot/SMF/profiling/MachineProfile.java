@@ -0,0 +1,95 @@
+package frc.robot.SMF.profiling;
+
+import edu.wpi.first.wpilibj.Alert;
+import edu.wpi.first.wpilibj.Alert.AlertType;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Loop cost of one state machine, split by phase of its periodic() call. Each phase keeps a rolling
+ * window of recent costs, and an alert is raised while the p99 of the total cost is over budget.
+ */
+public class MachineProfile {
+  /** The parts of a state machine's periodic() call */
+  public enum Phase {
+    /** Reading the state chooser and processing transitions */
+    TRANSITIONS,
+    /** Logging the state, flags and transition status */
+    LOGGING,
+    /** The machine's own logAdditionalOutputs() */
+    ADDITIONAL_LOGGING,
+    /** The machine's own update() */
+    UPDATE,
+    /** The whole periodic() call */
+    TOTAL
+  }
+
+  private static final Phase[] PHASES = Phase.values();
+
+  private final RollingWindow[] windows = new RollingWindow[PHASES.length];
+  private final String[] p50Keys = new String[PHASES.length];
+  private final String[] p99Keys = new String[PHASES.length];
+  private final String[] maxKeys = new String[PHASES.length];
+  private final Alert overBudgetAlert;
+  private double budgetMs;
+  private boolean overBudget = false;
+
+  /**
+   * @param name the name of the state machine
+   * @param windowSize the number of loops to keep for each phase
+   * @param budgetMs the p99 total cost above which the alert is raised
+   */
+  public MachineProfile(String name, int windowSize, double budgetMs) {
+    this.budgetMs = budgetMs;
+    for (Phase phase : PHASES) {
+      String key = "SubsystemManager/Profiling/" + name + "/" + phase.name();
+      windows[phase.ordinal()] = new RollingWindow(windowSize);
+      p50Keys[phase.ordinal()] = key + "/P50Ms";
+      p99Keys[phase.ordinal()] = key + "/P99Ms";
+      maxKeys[phase.ordinal()] = key + "/MaxMs";
+    }
+    overBudgetAlert =
+        new Alert("State machine " + name + " is over its loop time budget.", AlertType.kWarning);
+  }
+
+  /**
+   * Record the cost of a phase for the current loop
+   *
+   * @param phase the phase that was measured
+   * @param nanos the cost in nanoseconds
+   */
+  public void record(Phase phase, long nanos) {
+    windows[phase.ordinal()].add(nanos / 1e6);
+  }
+
+  /**
+   * @param budgetMs the p99 total cost above which the alert is raised
+   */
+  public void setBudgetMs(double budgetMs) {
+    this.budgetMs = budgetMs;
+  }
+
+  /**
+   * @return whether the machine was over budget when last published
+   */
+  public boolean isOverBudget() {
+    return overBudget;
+  }
+
+  /**
+   * Log the p50, p99 and max of each phase and update the alert
+   *
+   * @return whether the alert was raised by this call
+   */
+  public boolean publish() {
+    for (Phase phase : PHASES) {
+      RollingWindow window = windows[phase.ordinal()];
+      Logger.recordOutput(p50Keys[phase.ordinal()], window.getPercentile(0.5));
+      Logger.recordOutput(p99Keys[phase.ordinal()], window.getPercentile(0.99));
+      Logger.recordOutput(maxKeys[phase.ordinal()], window.getMax());
+    }
+    boolean wasOverBudget = overBudget;
+    overBudget = windows[Phase.TOTAL.ordinal()].getPercentile(0.99) > budgetMs;
+    overBudgetAlert.set(overBudget);
+    return overBudget && !wasOverBudget;
+  }
+}
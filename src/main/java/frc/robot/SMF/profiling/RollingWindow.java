@@ -0,0 +1,76 @@
+package frc.robot.SMF.profiling;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent values of a measurement in a fixed-size ring. Percentiles are computed by
+ * sorting a preallocated copy, so neither recording nor querying allocates.
+ */
+public class RollingWindow {
+  private final double[] samples;
+  private final double[] sorted;
+  private int next = 0;
+  private int count = 0;
+  private boolean sortedValid = false;
+
+  /**
+   * @param capacity the number of most recent values to keep
+   */
+  public RollingWindow(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Rolling window capacity must be positive");
+    }
+    samples = new double[capacity];
+    sorted = new double[capacity];
+  }
+
+  /**
+   * Add a value, replacing the oldest one if the window is full
+   *
+   * @param value the value to add
+   */
+  public void add(double value) {
+    samples[next] = value;
+    next = (next + 1) % samples.length;
+    if (count < samples.length) count++;
+    sortedValid = false;
+  }
+
+  /**
+   * @return the number of values in the window
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Get a percentile of the values in the window, using the nearest-rank method
+   *
+   * @param percentile the percentile, from 0.0 to 1.0
+   * @return the value at the percentile, or 0.0 if the window is empty
+   */
+  public double getPercentile(double percentile) {
+    if (count == 0) return 0.0;
+    if (!sortedValid) {
+      System.arraycopy(samples, 0, sorted, 0, count);
+      Arrays.sort(sorted, 0, count);
+      sortedValid = true;
+    }
+    int rank = (int) Math.ceil(percentile * count) - 1;
+    return sorted[Math.max(0, Math.min(count - 1, rank))];
+  }
+
+  /**
+   * @return the largest value in the window, or 0.0 if the window is empty
+   */
+  public double getMax() {
+    return getPercentile(1.0);
+  }
+
+  /** Remove every value from the window */
+  public void clear() {
+    next = 0;
+    count = 0;
+    sortedValid = false;
+  }
+}
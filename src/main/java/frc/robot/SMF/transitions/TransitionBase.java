@@ -1,12 +1,25 @@
 package frc.robot.SMF.transitions;
 
 public abstract class TransitionBase<E extends Enum<E>> {
+  /// How long a transition may run before a queued transition preempts it, unless overridden
+  public static final double DEFAULT_TIMEOUT_SECS = 2.0;
+
   protected final E startState;
   protected final E endState;
+  private final String name;
+  private double timeoutSecs = DEFAULT_TIMEOUT_SECS;
+
+  // Statistics of every run of this edge, in seconds
+  private long completedCount = 0;
+  private double totalSecs = 0.0;
+  private double maxSecs = 0.0;
+  private long timeoutCount = 0;
+  private long preemptionCount = 0;
 
   public TransitionBase(E startState, E endState) {
     this.startState = startState;
     this.endState = endState;
+    name = startState.name() + "->" + endState.name();
   }
 
   /**
@@ -48,4 +61,83 @@ public abstract class TransitionBase<E extends Enum<E>> {
   public E getEndState() {
     return endState;
   }
+
+  /**
+   * @return the start and end states of the transition, like "IDLE->CHARGE"
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return how long the transition may run before a queued transition preempts it
+   */
+  public double getTimeout() {
+    return timeoutSecs;
+  }
+
+  /**
+   * @param timeoutSecs how long the transition may run before a queued transition preempts it
+   */
+  public void setTimeout(double timeoutSecs) {
+    this.timeoutSecs = timeoutSecs;
+  }
+
+  /**
+   * Record a run of the transition that finished on its own
+   *
+   * @param durationSecs how long the transition ran
+   */
+  public void recordCompletion(double durationSecs) {
+    completedCount++;
+    totalSecs += durationSecs;
+    maxSecs = Math.max(maxSecs, durationSecs);
+    if (durationSecs >= timeoutSecs) timeoutCount++;
+  }
+
+  /**
+   * Record a run of the transition that was cancelled so that a queued transition could start
+   *
+   * @param durationSecs how long the transition ran before it was cancelled
+   */
+  public void recordPreemption(double durationSecs) {
+    preemptionCount++;
+    maxSecs = Math.max(maxSecs, durationSecs);
+    if (durationSecs >= timeoutSecs) timeoutCount++;
+  }
+
+  /**
+   * @return the number of runs that finished on their own
+   */
+  public long getCompletedCount() {
+    return completedCount;
+  }
+
+  /**
+   * @return the mean duration of the runs that finished on their own, or 0 if there were none
+   */
+  public double getMeanSecs() {
+    return completedCount > 0 ? totalSecs / completedCount : 0.0;
+  }
+
+  /**
+   * @return the longest run, including runs that were preempted
+   */
+  public double getMaxSecs() {
+    return maxSecs;
+  }
+
+  /**
+   * @return the number of runs that went past the timeout
+   */
+  public long getTimeoutCount() {
+    return timeoutCount;
+  }
+
+  /**
+   * @return the number of runs that were cancelled so that a queued transition could start
+   */
+  public long getPreemptionCount() {
+    return preemptionCount;
+  }
 }
@@ -4,24 +4,105 @@
 
 package frc.robot.subsystems.Shooter;
 
+import static frc.robot.Constants.Shooter.ERROR_MARGIN;
 import static frc.robot.Constants.Shooter.OUTPUT_SPEED;
+import static frc.robot.Constants.Shooter.PRECHARGE_CURRENT_BUDGET;
+import static frc.robot.Constants.Shooter.PRECHARGE_ENABLED;
+import static frc.robot.Constants.Shooter.PRECHARGE_ENERGY_BUDGET;
+import static frc.robot.Constants.Shooter.PRECHARGE_ENERGY_RAMP;
+import static frc.robot.Constants.Shooter.PRECHARGE_LOOKAHEAD;
+import static frc.robot.Constants.Shooter.PRECHARGE_RAMP_RATE;
+import static frc.robot.Constants.Shooter.PRECHARGE_VELOCITY_FRACTION;
+import static frc.robot.Constants.Shooter.PRECHARGE_ZONE_EXIT_RADIUS;
+import static frc.robot.Constants.Shooter.PRECHARGE_ZONE_RADIUS;
+import static frc.robot.Constants.Shooter.SHOOT_ON_THE_MOVE;
+import static frc.robot.Constants.Shooter.SHOT_MAP_FILE;
+import static frc.robot.Constants.Shooter.TARGET;
 
+import com.pathplanner.lib.util.FlippingUtil;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
-import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
-import edu.wpi.first.wpilibj2.command.WaitCommand;
-import edu.wpi.first.wpilibj2.command.WaitUntilCommand;
 import frc.robot.SMF.StateMachine;
-import frc.robot.subsystems.Shooter.ShooterIO.ShooterInputs;
+import frc.robot.SMF.TimerWheel;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+import org.littletonrobotics.junction.Logger;
 
 public class Shooter extends StateMachine<Shooter.State> {
   private final ShooterIO io;
 
-  private final ShooterInputs inputs = new ShooterInputs();
+  private final ShooterInputsAutoLogged inputs = new ShooterInputsAutoLogged();
 
-  public Shooter(ShooterIO io) {
+  // Setpoints come from the shot map, indexed by the distance from the robot to the target. When
+  // shooting on the move, the target is replaced by a virtual target that leads the robot's motion.
+  private final Supplier<Pose2d> poseSupplier;
+  private final DoubleSupplier fieldVelocityXSupplier;
+  private final DoubleSupplier fieldVelocityYSupplier;
+  private ShotMap shotMap;
+  private final ShotSolver solver;
+  private Translation2d target = TARGET;
+  private boolean shootOnTheMove = SHOOT_ON_THE_MOVE;
+  private double targetVelocity = OUTPUT_SPEED;
+
+  // Charge sequence: spin up for a minimum time, wait until charged, then settle before shooting
+  private static final double SPIN_UP_TIME = 0.25;
+  private static final double SETTLE_TIME = 0.1;
+  private final TimerWheel.Timeout spinUpTimeout = new TimerWheel.Timeout(() -> spunUp = true);
+  private final TimerWheel.Timeout settleTimeout = new TimerWheel.Timeout(this::finishCharging);
+  private boolean spunUp = false;
+
+  // Start times of the spin-up and post-shot recovery being measured, NaN when not measuring
+  private static final double RECOVERY_TOLERANCE = 1.0; // rot/s from the target
+  private double spinUpStart = Double.NaN;
+  private double spinUpStartVelocity = 0.0;
+  private double recoveryStart = Double.NaN;
+  private double recoverySetpoint = 0.0; // The setpoint when the shot was fired
+
+  // Pre-charge spins the shooter up while idle near the target, within an energy and current
+  // budget. Time saved is measured against the spin-up time from rest.
+  private static final double COLD_VELOCITY = 5.0; // rot/s below which a spin-up starts from rest
+  private static final double COLD_SPIN_UP_SMOOTHING = 0.3;
+  private static final int MOTOR_COUNT = 2; // Both motors draw about the same supply current
+  private static final double MIN_ENERGY_SCALE = 0.05; // Stop once the energy ramp is this low
+  private boolean prechargeEnabled = PRECHARGE_ENABLED;
+  private double prechargeScale = 0.0;
+  private double prechargeEnergyUsed = 0.0;
+  private double coldSpinUpTime = Double.NaN;
+  private double totalTimeSaved = 0.0;
+  private double lastUpdateTime = Double.NaN;
+
+  // Read once per loop in solve() and shared with the pre-charge zone check
+  private Pose2d pose = Pose2d.kZero;
+  private double fieldVelocityX = 0.0;
+  private double fieldVelocityY = 0.0;
+
+  /**
+   * @param io the shooter hardware
+   * @param poseSupplier the estimated robot pose
+   * @param fieldVelocityXSupplier the field-relative x velocity of the robot in meters per second
+   * @param fieldVelocityYSupplier the field-relative y velocity of the robot in meters per second
+   */
+  public Shooter(
+      ShooterIO io,
+      Supplier<Pose2d> poseSupplier,
+      DoubleSupplier fieldVelocityXSupplier,
+      DoubleSupplier fieldVelocityYSupplier) {
     super("Shooter", State.UNDETERMINED, State.class);
     this.io = io;
+    this.poseSupplier = poseSupplier;
+    this.fieldVelocityXSupplier = fieldVelocityXSupplier;
+    this.fieldVelocityYSupplier = fieldVelocityYSupplier;
+    shotMap = ShotMap.fromDeployFile(SHOT_MAP_FILE, ShotMap.constant(OUTPUT_SPEED));
+    solver = new ShotSolver(shotMap);
+    setEventDriven(true);
 
     io.updateInputs(inputs);
 
@@ -31,20 +112,143 @@ public class Shooter extends StateMachine<Shooter.State> {
 
   public void registerStateCommands() {
 
-    registerStateCommand(State.IDLE, new InstantCommand(io::stop));
+    registerStateCommand(State.IDLE, new InstantCommand(this::stop));
+
+    registerStateCommand(State.CHARGE, new InstantCommand(this::startCharging));
+
+    registerStateCommand(State.SHOOT, new InstantCommand(this::shoot));
+
+    registerStateCommand(State.PRECHARGE, new InstantCommand(this::startPrecharge));
+  }
+
+  private void stop() {
+    io.stop();
+    spinUpStart = Double.NaN;
+    recoveryStart = Double.NaN;
+  }
+
+  private void shoot() {
+    io.simulateGamePiece();
+    recoveryStart = Timer.getFPGATimestamp();
+    // The solver keeps moving the target, so recovery is measured against the setpoint fired at
+    recoverySetpoint = targetVelocity;
+  }
+
+  private void startCharging() {
+    updateTarget();
+    solve();
+    io.setShooterTargetVelocity(targetVelocity);
+    spunUp = false;
+    spinUpStart = Timer.getFPGATimestamp();
+    spinUpStartVelocity = inputs.velocity;
+    cancelTimeout(settleTimeout);
+    scheduleTimeout(spinUpTimeout, SPIN_UP_TIME);
+  }
+
+  private void startPrecharge() {
+    // Ramp from the speed the flywheel is still coasting at, so re-entering pre-charge does not
+    // command it back down to zero. The ramp still backs off from there over the current budget.
+    double fullPrecharge = targetVelocity * PRECHARGE_VELOCITY_FRACTION;
+    if (fullPrecharge <= 0.0) {
+      prechargeScale = 0.0;
+      return;
+    }
+    prechargeScale =
+        MathUtil.clamp(Math.min(inputs.velocity / fullPrecharge, getEnergyScale()), 0.0, 1.0);
+  }
+
+  /**
+   * Whether the robot is in the pre-charge zone, or will be within the lookahead time at its
+   * current velocity
+   *
+   * @param radius the zone radius in meters, larger when leaving the zone than when entering it
+   */
+  private boolean isInPrechargeZone(double radius) {
+    if (pose.getTranslation().getDistance(target) <= radius) return true;
+    double predictedX = pose.getX() + fieldVelocityX * PRECHARGE_LOOKAHEAD;
+    double predictedY = pose.getY() + fieldVelocityY * PRECHARGE_LOOKAHEAD;
+    return Math.hypot(predictedX - target.getX(), predictedY - target.getY()) <= radius;
+  }
+
+  /** The largest pre-charge scale the remaining energy budget allows */
+  private double getEnergyScale() {
+    return MathUtil.clamp(
+        (PRECHARGE_ENERGY_BUDGET - prechargeEnergyUsed) / PRECHARGE_ENERGY_RAMP, 0.0, 1.0);
+  }
+
+  /**
+   * @param radius the pre-charge zone radius in meters
+   */
+  private boolean shouldPrecharge(double radius) {
+    return prechargeEnabled && getEnergyScale() > MIN_ENERGY_SCALE && isInPrechargeZone(radius);
+  }
+
+  /**
+   * Spin toward a fraction of the expected setpoint, ramping down while over the current budget
+   * and as the energy budget runs out
+   */
+  private void updatePrecharge(double dt) {
+    double supplyCurrent = inputs.supplyCurrent * MOTOR_COUNT;
+    prechargeEnergyUsed += RobotController.getBatteryVoltage() * supplyCurrent * dt;
+    if (!shouldPrecharge(PRECHARGE_ZONE_EXIT_RADIUS)) {
+      requestTransition(State.IDLE);
+      return;
+    }
+
+    double ramp = PRECHARGE_RAMP_RATE * dt;
+    prechargeScale += inputs.supplyCurrent > PRECHARGE_CURRENT_BUDGET ? -ramp : ramp;
+    prechargeScale = MathUtil.clamp(Math.min(prechargeScale, getEnergyScale()), 0.0, 1.0);
+    io.setShooterTargetVelocity(targetVelocity * PRECHARGE_VELOCITY_FRACTION * prechargeScale);
+  }
+
+  /**
+   * @param prechargeEnabled whether to spin the shooter up while idle near the target
+   */
+  public void setPrechargeEnabled(boolean prechargeEnabled) {
+    this.prechargeEnabled = prechargeEnabled;
+  }
+
+  /** Flip the target for the alliance. The alliance cannot change within a mode. */
+  private void updateTarget() {
+    boolean isRed = DriverStation.getAlliance().orElse(Alliance.Blue) == Alliance.Red;
+    target = isRed ? FlippingUtil.flipFieldPosition(TARGET) : TARGET;
+  }
+
+  /** Solve for the shooter velocity and aim heading from the current pose and speeds */
+  private void solve() {
+    pose = poseSupplier.get();
+    fieldVelocityX = fieldVelocityXSupplier.getAsDouble();
+    fieldVelocityY = fieldVelocityYSupplier.getAsDouble();
+    double vx = shootOnTheMove ? fieldVelocityX : 0.0;
+    double vy = shootOnTheMove ? fieldVelocityY : 0.0;
+    solver.solve(pose.getX(), pose.getY(), vx, vy, target.getX(), target.getY());
+    targetVelocity = solver.getVelocity();
+  }
+
+  /**
+   * @return the field-relative heading the robot should face to shoot, leading the target when
+   *     shooting on the move
+   */
+  public Rotation2d getAimHeading() {
+    return Rotation2d.fromRadians(solver.getHeading());
+  }
+
+  /**
+   * @param shootOnTheMove whether to lead the target by the robot's motion
+   */
+  public void setShootOnTheMove(boolean shootOnTheMove) {
+    this.shootOnTheMove = shootOnTheMove;
+  }
 
-    registerStateCommand(
-        State.CHARGE,
-        new SequentialCommandGroup(
-            new InstantCommand(() -> io.setShooterTargetVelocity(OUTPUT_SPEED)),
-            new WaitCommand(0.25),
-            new WaitUntilCommand(() -> io.isCharged()),
-            new WaitCommand(0.1),
-            transitionCommand(State.SHOOT)));
+  private void finishCharging() {
+    if (getState() == State.CHARGE) {
+      requestTransition(State.SHOOT);
+    }
   }
 
   public void registerStateTransitions() {
     addOmniTransition(State.IDLE);
+    addOmniTransition(State.PRECHARGE);
     addOmniTransition(State.CHARGE);
     addOmniTransition(State.SHOOT);
   }
@@ -54,16 +258,107 @@ public class Shooter extends StateMachine<Shooter.State> {
     setState(State.IDLE);
   }
 
+  @Override
+  protected void onDisable() {
+    // Pick up a shot map copied to the deploy directory without redeploying code
+    shotMap = ShotMap.fromDeployFile(SHOT_MAP_FILE, shotMap);
+    solver.setShotMap(shotMap);
+  }
+
+  @Override
+  protected void onAutonomousStart() {
+    updateTarget();
+    prechargeEnergyUsed = 0.0;
+  }
+
+  @Override
+  protected void onTeleopStart() {
+    updateTarget();
+    prechargeEnergyUsed = 0.0;
+  }
+
   @Override
   protected void update() {
     io.updateInputs(inputs);
+    Logger.processInputs("Shooter", inputs);
+
+    double now = Timer.getFPGATimestamp();
+    double dt = Double.isNaN(lastUpdateTime) ? 0.0 : now - lastUpdateTime;
+    lastUpdateTime = now;
+
+    // Solved every loop so the aim heading and pre-charge setpoint are ready before charging
+    solve();
+    switch (getState()) {
+      case IDLE -> {
+        if (shouldPrecharge(PRECHARGE_ZONE_RADIUS)) requestTransition(State.PRECHARGE);
+      }
+      case PRECHARGE -> updatePrecharge(dt);
+      case CHARGE -> io.setShooterTargetVelocity(targetVelocity);
+      default -> {}
+    }
+
+    // Only checked between the end of spin-up and the start of settling
+    if (getState() == State.CHARGE && spunUp && !settleTimeout.isScheduled() && isCharged()) {
+      scheduleTimeout(settleTimeout, SETTLE_TIME);
+    }
+    measureResponseTimes();
     SmartDashboard.putString("Shooter State", getState().toString());
   }
 
+  /** Log how long spin-up took once charged, and how long recovery took after a shot */
+  private void measureResponseTimes() {
+    double now = Timer.getFPGATimestamp();
+    if (!Double.isNaN(spinUpStart) && isCharged()) {
+      double spinUpTime = now - spinUpStart;
+      Logger.recordOutput("Shooter/SpinUpTime", spinUpTime);
+      spinUpStart = Double.NaN;
+
+      if (spinUpStartVelocity < COLD_VELOCITY) {
+        coldSpinUpTime =
+            Double.isNaN(coldSpinUpTime)
+                ? spinUpTime
+                : coldSpinUpTime + COLD_SPIN_UP_SMOOTHING * (spinUpTime - coldSpinUpTime);
+      } else if (!Double.isNaN(coldSpinUpTime)) {
+        // Spin-up started warm, usually from pre-charge
+        double timeSaved = Math.max(0.0, coldSpinUpTime - spinUpTime);
+        totalTimeSaved += timeSaved;
+        Logger.recordOutput("Shooter/Precharge/TimeSaved", timeSaved);
+        Logger.recordOutput("Shooter/Precharge/TotalTimeSaved", totalTimeSaved);
+      }
+    }
+    if (!Double.isNaN(recoveryStart)
+        && Math.abs(inputs.velocity - recoverySetpoint) <= RECOVERY_TOLERANCE) {
+      Logger.recordOutput("Shooter/RecoveryTime", now - recoveryStart);
+      recoveryStart = Double.NaN;
+    }
+  }
+
+  /**
+   * @return whether the shooter is close enough to the target velocity to shoot
+   */
+  public boolean isCharged() {
+    return inputs.velocity >= targetVelocity - ERROR_MARGIN;
+  }
+
+  @Override
+  protected void logAdditionalOutputs() {
+    Logger.recordOutput("Shooter/TargetDistance", solver.getDistance());
+    Logger.recordOutput("Shooter/TargetVelocity", targetVelocity);
+    Logger.recordOutput("Shooter/Solver/VirtualTargetX", solver.getVirtualTargetX());
+    Logger.recordOutput("Shooter/Solver/VirtualTargetY", solver.getVirtualTargetY());
+    Logger.recordOutput("Shooter/Solver/Iterations", solver.getIterations());
+    Logger.recordOutput("Shooter/Solver/Converged", solver.isConverged());
+    Logger.recordOutput("Shooter/Solver/SolveMicros", solver.getSolveMicros());
+    Logger.recordOutput("Shooter/Precharge/Scale", prechargeScale);
+    Logger.recordOutput("Shooter/Precharge/EnergyUsed", prechargeEnergyUsed);
+    Logger.recordOutput("Shooter/Precharge/ColdSpinUpTime", coldSpinUpTime);
+  }
+
   public enum State {
     // states
     UNDETERMINED,
     IDLE,
+    PRECHARGE,
     CHARGE,
     SHOOT
   }
@@ -6,19 +6,25 @@ public interface ShooterIO {
 
   @AutoLog
   public static class ShooterInputs {
-    public double current = 0.0;
-    public double encoderPosition = 0.0;
+    public boolean connected = false;
+    public double velocity = 0.0; // Rotations per second
+    public double targetVelocity = 0.0; // Rotations per second, 0 when stopped
+    public double appliedVolts = 0.0;
+    public double current = 0.0; // Torque current in amps
+    public double supplyCurrent = 0.0;
+    public double encoderPosition = 0.0; // Rotations
+
+    public boolean followerConnected = false;
+    public double followerCurrent = 0.0; // Torque current in amps
   }
 
+  /** Run the shooter at a velocity in rotations per second with closed-loop control */
   public default void setShooterTargetVelocity(double velocity) {}
 
   public default void stop() {}
 
   public default void updateInputs(ShooterInputs inputs) {}
 
-  public default void setPIDControl() {}
-
-  public default boolean isCharged() {
-    return false;
-  }
+  /** Model a game piece passing through the shooter. Only used in simulation. */
+  public default void simulateGamePiece() {}
 }
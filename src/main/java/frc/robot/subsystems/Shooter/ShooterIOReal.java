@@ -1,58 +1,125 @@
 package frc.robot.subsystems.Shooter;
 
 import static frc.robot.Constants.Shooter.*;
+import static frc.robot.util.PhoenixUtil.*;
 
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.MotorOutputConfigs;
+import com.ctre.phoenix6.controls.Follower;
+import com.ctre.phoenix6.controls.VelocityTorqueCurrentFOC;
+import com.ctre.phoenix6.controls.VelocityVoltage;
+import com.ctre.phoenix6.hardware.ParentDevice;
 import com.ctre.phoenix6.hardware.TalonFXS;
-import edu.wpi.first.math.controller.PIDController;
-import edu.wpi.first.wpilibj.Timer;
+import com.ctre.phoenix6.signals.MotorAlignmentValue;
+import edu.wpi.first.units.measure.Angle;
+import edu.wpi.first.units.measure.AngularVelocity;
+import edu.wpi.first.units.measure.Current;
+import edu.wpi.first.units.measure.Voltage;
 
+/**
+ * Shooter IO implementation for a lead and follower Talon FXS. Velocity is closed on the lead
+ * controller with preallocated control requests, and status signals are refreshed once per loop in
+ * {@link #updateInputs(ShooterInputs)}.
+ */
 public class ShooterIOReal implements ShooterIO {
+  protected final TalonFXS leadShooter = new TalonFXS(LEAD_SHOOTER_ID);
+  protected final TalonFXS followShooter = new TalonFXS(FOLLOW_SHOOTER_ID);
 
-  private Timer timer = new Timer();
+  // Control requests, reused every loop
+  private final VelocityVoltage velocityVoltageRequest = new VelocityVoltage(0.0);
+  private final VelocityTorqueCurrentFOC velocityTorqueCurrentRequest =
+      new VelocityTorqueCurrentFOC(0.0);
+  private double targetVelocity = 0.0;
 
-  private PIDController pid = new PIDController(0.1, 0.0, 0.0);
+  // Inputs from the lead motor
+  private final StatusSignal<AngularVelocity> velocity = leadShooter.getVelocity();
+  private final StatusSignal<Angle> position = leadShooter.getPosition();
+  private final StatusSignal<Voltage> appliedVolts = leadShooter.getMotorVoltage();
+  private final StatusSignal<Current> torqueCurrent = leadShooter.getTorqueCurrent();
+  private final StatusSignal<Current> supplyCurrent = leadShooter.getSupplyCurrent();
 
-  protected final TalonFXS leadShooter = new TalonFXS(LEAD_SHOOTER_ID);
+  // Inputs from the follower motor
+  private final StatusSignal<Current> followerTorqueCurrent = followShooter.getTorqueCurrent();
+
+  // Signals grouped by device, refreshed together once per loop
+  private final BaseStatusSignal[] leadSignals = {
+    velocity, position, appliedVolts, torqueCurrent, supplyCurrent
+  };
+  private final BaseStatusSignal[] followerSignals = {followerTorqueCurrent};
+  private final BaseStatusSignal[] allSignals = {
+    velocity, position, appliedVolts, torqueCurrent, supplyCurrent, followerTorqueCurrent
+  };
 
   public ShooterIOReal() {
     configureMotor();
-    timer.reset();
   }
 
   private void configureMotor() {
-    leadShooter.getConfigurator().apply(CURRENT_LIMIT);
-    leadShooter.setNeutralMode(NEUTRAL_MODE);
-    leadShooter.getConfigurator().apply(new MotorOutputConfigs().withInverted(LEAD_SHOOTER_INVERT));
-  }
+    // Only the config groups owned by this code are applied, so settings made in Tuner X are kept
+    tryUntilOk(5, () -> leadShooter.getConfigurator().apply(CURRENT_LIMIT, 0.25));
+    tryUntilOk(5, () -> followShooter.getConfigurator().apply(CURRENT_LIMIT, 0.25));
+    tryUntilOk(
+        5,
+        () ->
+            leadShooter
+                .getConfigurator()
+                .apply(
+                    new MotorOutputConfigs()
+                        .withInverted(LEAD_SHOOTER_INVERT)
+                        .withNeutralMode(NEUTRAL_MODE),
+                    0.25));
+    tryUntilOk(
+        5,
+        () ->
+            followShooter
+                .getConfigurator()
+                .apply(new MotorOutputConfigs().withNeutralMode(NEUTRAL_MODE), 0.25));
+    tryUntilOk(
+        5,
+        () ->
+            leadShooter
+                .getConfigurator()
+                .apply(USE_TORQUE_CURRENT_FOC ? TORQUE_CURRENT_GAINS : VOLTAGE_GAINS, 0.25));
 
-  @Override
-  public void setShooterTargetVelocity(double velocity) {
-    leadShooter.set(velocity);
+    // The follower mirrors the lead's output, with the same direction relative to its own invert
+    followShooter.setControl(new Follower(LEAD_SHOOTER_ID, MotorAlignmentValue.Aligned));
+
+    // Velocity is read faster so the end of spin-up and the drop after a shot are seen sooner
+    BaseStatusSignal.setUpdateFrequencyForAll(VELOCITY_SIGNAL_FREQUENCY, velocity);
+    BaseStatusSignal.setUpdateFrequencyForAll(
+        50.0, position, appliedVolts, torqueCurrent, supplyCurrent, followerTorqueCurrent);
+    ParentDevice.optimizeBusUtilizationForAll(leadShooter, followShooter);
   }
 
   @Override
-  public void setPIDControl() {
-    pid.setSetpoint(2.0);
-    leadShooter.setVoltage(pid.calculate(leadShooter.getTorqueCurrent().getValueAsDouble()));
+  public void setShooterTargetVelocity(double velocity) {
+    targetVelocity = velocity;
+    leadShooter.setControl(
+        USE_TORQUE_CURRENT_FOC
+            ? velocityTorqueCurrentRequest.withVelocity(velocity)
+            : velocityVoltageRequest.withVelocity(velocity));
   }
 
   @Override
   public void stop() {
-    leadShooter.set(0);
+    targetVelocity = 0.0;
     leadShooter.stopMotor();
   }
 
   @Override
   public void updateInputs(ShooterInputs inputs) {
-    inputs.current = leadShooter.getTorqueCurrent().getValueAsDouble();
-    inputs.encoderPosition = leadShooter.getPosition().getValueAsDouble();
-  }
+    BaseStatusSignal.refreshAll(allSignals);
 
-  @Override
-  public boolean isCharged() {
-    double omega = leadShooter.getVelocity().getValueAsDouble();
+    inputs.connected = BaseStatusSignal.isAllGood(leadSignals);
+    inputs.velocity = velocity.getValueAsDouble();
+    inputs.targetVelocity = targetVelocity;
+    inputs.appliedVolts = appliedVolts.getValueAsDouble();
+    inputs.current = torqueCurrent.getValueAsDouble();
+    inputs.supplyCurrent = supplyCurrent.getValueAsDouble();
+    inputs.encoderPosition = position.getValueAsDouble();
 
-    return omega >= OUTPUT_SPEED - ERROR_MARGIN;
+    inputs.followerConnected = BaseStatusSignal.isAllGood(followerSignals);
+    inputs.followerCurrent = followerTorqueCurrent.getValueAsDouble();
   }
 }
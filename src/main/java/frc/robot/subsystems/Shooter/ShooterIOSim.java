@@ -0,0 +1,134 @@
+package frc.robot.subsystems.Shooter;
+
+import static frc.robot.Constants.Shooter.CURRENT_LIMIT;
+import static frc.robot.Constants.Shooter.VOLTAGE_GAINS;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.FlywheelSim;
+
+/**
+ * Physics sim implementation of shooter IO. Models the inertia of the flywheel, the supply current
+ * limit of the motor controllers, battery sag under the shooter's load, and the energy a game piece
+ * takes from the flywheel as it passes through. Velocity control runs in the sim with the same
+ * voltage gains as the real controller, so spin-up and recovery times tuned here carry over.
+ */
+public class ShooterIOSim implements ShooterIO {
+  // The shooter has no measured sim constants yet, so the plant is declared locally
+  private static final int MOTOR_COUNT = 2;
+  private static final DCMotor GEARBOX = DCMotor.getMinion(MOTOR_COUNT);
+  private static final double GEARING = 1.0;
+  private static final double MOI = 0.002; // kg * m^2 of the flywheel and rollers
+  private static final double BATTERY_RESISTANCE = 0.02; // Ohms, the BatterySim default
+
+  // Game piece, the piece leaves at a fraction of the flywheel surface speed
+  private static final double GAME_PIECE_MASS = 0.215; // kg
+  private static final double WHEEL_RADIUS = Units.inchesToMeters(2.0);
+  private static final double EXIT_SPEED_RATIO = 0.5;
+
+  private final FlywheelSim flywheelSim =
+      new FlywheelSim(LinearSystemId.createFlywheelSystem(GEARBOX, MOI, GEARING), GEARBOX);
+  private final PIDController controller =
+      new PIDController(VOLTAGE_GAINS.kP, VOLTAGE_GAINS.kI, VOLTAGE_GAINS.kD);
+  private final double supplyCurrentLimit =
+      CURRENT_LIMIT.SupplyCurrentLimitEnable
+          ? CURRENT_LIMIT.SupplyCurrentLimit * MOTOR_COUNT
+          : Double.POSITIVE_INFINITY;
+
+  private boolean closedLoop = false;
+  private double targetVelocity = 0.0;
+  private double appliedVolts = 0.0;
+  private double position = 0.0;
+  private boolean gamePiecePending = false;
+  private double supplyCurrent = 0.0; // Amps drawn by both motors on the last update
+
+  @Override
+  public void updateInputs(ShooterInputs inputs) {
+    if (gamePiecePending) {
+      // The piece leaves with kinetic energy taken from the flywheel
+      gamePiecePending = false;
+      double omega = flywheelSim.getAngularVelocityRadPerSec();
+      double pieceInertia = GAME_PIECE_MASS * Math.pow(EXIT_SPEED_RATIO * WHEEL_RADIUS, 2);
+      flywheelSim.setAngularVelocity(omega / Math.sqrt(1.0 + pieceInertia / MOI));
+    }
+
+    double velocity = Units.radiansToRotations(flywheelSim.getAngularVelocityRadPerSec());
+    double batteryVolts = getBatteryVoltage();
+    // The real controllers go neutral while the robot is disabled
+    if (closedLoop && DriverStation.isEnabled()) {
+      appliedVolts =
+          VOLTAGE_GAINS.kS * Math.signum(targetVelocity)
+              + VOLTAGE_GAINS.kV * targetVelocity
+              + controller.calculate(velocity, targetVelocity);
+    } else {
+      appliedVolts = 0.0;
+    }
+    appliedVolts =
+        limitSupplyCurrent(MathUtil.clamp(appliedVolts, -batteryVolts, batteryVolts), batteryVolts);
+
+    flywheelSim.setInputVoltage(appliedVolts);
+    flywheelSim.update(0.02);
+
+    // Supply current scales with the duty cycle of the controllers
+    double statorCurrent = flywheelSim.getCurrentDrawAmps();
+    supplyCurrent = Math.abs(statorCurrent * appliedVolts / batteryVolts);
+
+    inputs.connected = true;
+    inputs.velocity = Units.radiansToRotations(flywheelSim.getAngularVelocityRadPerSec());
+    inputs.targetVelocity = closedLoop ? targetVelocity : 0.0;
+    inputs.appliedVolts = appliedVolts;
+    inputs.current = statorCurrent / MOTOR_COUNT;
+    inputs.supplyCurrent = supplyCurrent / MOTOR_COUNT;
+    position += inputs.velocity * 0.02;
+    inputs.encoderPosition = position;
+    inputs.followerConnected = true;
+    inputs.followerCurrent = inputs.current;
+  }
+
+  /**
+   * The battery voltage seen by the shooter, sagged by its own load on the last update. The sag is
+   * kept local, since writing it to the RoboRIO sim would overwrite the voltage the rest of the
+   * robot sees with one that ignores every other load.
+   */
+  private double getBatteryVoltage() {
+    return Math.max(0.0, RobotController.getBatteryVoltage() - supplyCurrent * BATTERY_RESISTANCE);
+  }
+
+  /**
+   * Lower a voltage so the supply current of the controllers stays under the limit. Supply current
+   * is V * (V - backEmf) / (R * batteryVolts), so the highest allowed voltage is the positive root
+   * of V^2 - backEmf * V - limit * R * batteryVolts.
+   */
+  private double limitSupplyCurrent(double volts, double batteryVolts) {
+    double omegaMotor = flywheelSim.getAngularVelocityRadPerSec() * GEARING;
+    double backEmf = omegaMotor / GEARBOX.KvRadPerSecPerVolt;
+    double c = supplyCurrentLimit * GEARBOX.rOhms * batteryVolts;
+    double sign = Math.signum(volts);
+    double b = sign * backEmf; // Back EMF in the direction of the applied voltage
+    double maxVolts = (b + Math.sqrt(b * b + 4.0 * c)) / 2.0;
+    return sign * Math.min(Math.abs(volts), maxVolts);
+  }
+
+  @Override
+  public void setShooterTargetVelocity(double velocity) {
+    if (!closedLoop) controller.reset();
+    closedLoop = true;
+    targetVelocity = velocity;
+  }
+
+  @Override
+  public void stop() {
+    closedLoop = false;
+    targetVelocity = 0.0;
+  }
+
+  @Override
+  public void simulateGamePiece() {
+    gamePiecePending = true;
+  }
+}
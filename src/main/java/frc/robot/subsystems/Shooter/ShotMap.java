@@ -0,0 +1,160 @@
+package frc.robot.subsystems.Shooter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Maps the distance to the target to a shooter setpoint. Points are stored in primitive arrays
+ * sorted by distance, and lookups interpolate linearly between the two nearest points, clamping to
+ * the closest and furthest points outside the table. Lookups do not allocate.
+ *
+ * <p>The table is loaded from a JSON file in the deploy directory, shaped like {@code {"points":
+ * [{"distance": 2.0, "velocity": 46.0, "hoodAngle": 0.0, "timeOfFlight": 0.9}, ...]}}, with
+ * distance in meters, velocity in rotations per second, hood angle in degrees, and time of flight
+ * in seconds. The hood angle and time of flight are optional and default to 0.
+ */
+public class ShotMap {
+  private final double[] distances;
+  private final double[] velocities;
+  private final double[] hoodAngles;
+  private final double[] timesOfFlight;
+
+  /**
+   * Create a map from points that are already sorted by distance
+   *
+   * @param distances the distance of each point in meters
+   * @param velocities the shooter velocity of each point in rotations per second
+   * @param hoodAngles the hood angle of each point in degrees
+   * @param timesOfFlight the time of flight of each point in seconds
+   */
+  public ShotMap(
+      double[] distances, double[] velocities, double[] hoodAngles, double[] timesOfFlight) {
+    if (distances.length == 0
+        || distances.length != velocities.length
+        || distances.length != hoodAngles.length
+        || distances.length != timesOfFlight.length) {
+      throw new IllegalArgumentException("Shot map values must be the same non-zero length");
+    }
+    this.distances = distances;
+    this.velocities = velocities;
+    this.hoodAngles = hoodAngles;
+    this.timesOfFlight = timesOfFlight;
+  }
+
+  /**
+   * Create a map with a single point, so every distance gives the same setpoint
+   *
+   * @param velocity the shooter velocity in rotations per second
+   */
+  public static ShotMap constant(double velocity) {
+    return new ShotMap(
+        new double[] {0.0}, new double[] {velocity}, new double[] {0.0}, new double[] {0.0});
+  }
+
+  /**
+   * Load a map from a JSON file in the deploy directory
+   *
+   * @param fileName the name of the file in the deploy directory
+   * @param fallback the map to use if the file cannot be read
+   * @return the loaded map, or the fallback
+   */
+  public static ShotMap fromDeployFile(String fileName, ShotMap fallback) {
+    File file = new File(Filesystem.getDeployDirectory(), fileName);
+    try {
+      JsonNode points = new ObjectMapper().readTree(file).get("points");
+      if (points == null || !points.isArray() || points.isEmpty()) {
+        throw new IOException("no points");
+      }
+
+      // Sort the points by distance so lookups can binary search
+      JsonNode[] sorted = new JsonNode[points.size()];
+      for (int i = 0; i < sorted.length; i++) {
+        sorted[i] = points.get(i);
+      }
+      Arrays.sort(
+          sorted, (a, b) -> Double.compare(readValue(a, "distance"), readValue(b, "distance")));
+
+      double[] distances = new double[sorted.length];
+      double[] velocities = new double[sorted.length];
+      double[] hoodAngles = new double[sorted.length];
+      double[] timesOfFlight = new double[sorted.length];
+      for (int i = 0; i < sorted.length; i++) {
+        distances[i] = readValue(sorted[i], "distance");
+        velocities[i] = readValue(sorted[i], "velocity");
+        hoodAngles[i] = sorted[i].path("hoodAngle").asDouble(0.0);
+        timesOfFlight[i] = sorted[i].path("timeOfFlight").asDouble(0.0);
+      }
+      return new ShotMap(distances, velocities, hoodAngles, timesOfFlight);
+    } catch (IOException | IllegalArgumentException e) {
+      DriverStation.reportError("Failed to load shot map " + file + ": " + e.getMessage(), false);
+      return fallback;
+    }
+  }
+
+  private static double readValue(JsonNode point, String field) {
+    JsonNode value = point.get(field);
+    if (value == null || !value.isNumber()) {
+      throw new IllegalArgumentException("point is missing " + field);
+    }
+    return value.asDouble();
+  }
+
+  /**
+   * @param distance the distance to the target in meters
+   * @return the shooter velocity in rotations per second
+   */
+  public double getVelocity(double distance) {
+    return interpolate(velocities, distance);
+  }
+
+  /**
+   * @param distance the distance to the target in meters
+   * @return the hood angle in degrees
+   */
+  public double getHoodAngle(double distance) {
+    return interpolate(hoodAngles, distance);
+  }
+
+  /**
+   * @param distance the distance to the target in meters
+   * @return the time from leaving the shooter to reaching the target in seconds
+   */
+  public double getTimeOfFlight(double distance) {
+    return interpolate(timesOfFlight, distance);
+  }
+
+  /**
+   * @return the number of points in the map
+   */
+  public int size() {
+    return distances.length;
+  }
+
+  private double interpolate(double[] values, double distance) {
+    int last = distances.length - 1;
+    if (distance <= distances[0]) return values[0];
+    if (distance >= distances[last]) return values[last];
+
+    // Find the two points around the distance
+    int low = 0;
+    int high = last;
+    while (high - low > 1) {
+      int mid = (low + high) >>> 1;
+      if (distances[mid] <= distance) {
+        low = mid;
+      } else {
+        high = mid;
+      }
+    }
+
+    double span = distances[high] - distances[low];
+    if (span <= 0.0) return values[high];
+    double t = (distance - distances[low]) / span;
+    return values[low] + (values[high] - values[low]) * t;
+  }
+}
@@ -0,0 +1,141 @@
+package frc.robot.subsystems.Shooter;
+
+/**
+ * Solves for the point to aim at while the robot is moving. A game piece leaves the robot with the
+ * robot's field-relative velocity, so aiming at the real target misses by that velocity times the
+ * time of flight. The solver aims at a virtual target offset against the robot's motion instead,
+ * found by fixed-point iteration: the time of flight to the virtual target gives a new offset,
+ * which gives a new virtual target. The number of iterations is bounded, so a solve always fits in
+ * the loop. Results are kept in fields, so solving does not allocate.
+ */
+public class ShotSolver {
+  static final int MAX_ITERATIONS = 8;
+  static final double TOLERANCE = 0.001; // Meters the virtual target may move when solved
+
+  private ShotMap shotMap;
+
+  private double virtualTargetX;
+  private double virtualTargetY;
+  private double distance;
+  private double velocity;
+  private double heading;
+  private int iterations;
+  private boolean converged;
+  private long solveNanos;
+
+  /**
+   * @param shotMap the map to read time of flight and shooter velocity from
+   */
+  public ShotSolver(ShotMap shotMap) {
+    this.shotMap = shotMap;
+  }
+
+  /**
+   * @param shotMap the map to read time of flight and shooter velocity from
+   */
+  public void setShotMap(ShotMap shotMap) {
+    this.shotMap = shotMap;
+  }
+
+  /**
+   * Solve for the virtual target. Every value is in field coordinates.
+   *
+   * @param robotX the robot x position in meters
+   * @param robotY the robot y position in meters
+   * @param robotVx the robot x velocity in meters per second
+   * @param robotVy the robot y velocity in meters per second
+   * @param targetX the target x position in meters
+   * @param targetY the target y position in meters
+   * @return whether the iteration converged, the last estimate is kept either way
+   */
+  public boolean solve(
+      double robotX,
+      double robotY,
+      double robotVx,
+      double robotVy,
+      double targetX,
+      double targetY) {
+    long start = System.nanoTime();
+    double x = targetX;
+    double y = targetY;
+    converged = false;
+    iterations = 0;
+    while (iterations < MAX_ITERATIONS) {
+      iterations++;
+      double timeOfFlight = shotMap.getTimeOfFlight(Math.hypot(x - robotX, y - robotY));
+      double nextX = targetX - robotVx * timeOfFlight;
+      double nextY = targetY - robotVy * timeOfFlight;
+      double change = Math.hypot(nextX - x, nextY - y);
+      x = nextX;
+      y = nextY;
+      if (change < TOLERANCE) {
+        converged = true;
+        break;
+      }
+    }
+
+    virtualTargetX = x;
+    virtualTargetY = y;
+    distance = Math.hypot(x - robotX, y - robotY);
+    velocity = shotMap.getVelocity(distance);
+    heading = Math.atan2(y - robotY, x - robotX);
+    solveNanos = System.nanoTime() - start;
+    return converged;
+  }
+
+  /**
+   * @return the x position of the virtual target in meters
+   */
+  public double getVirtualTargetX() {
+    return virtualTargetX;
+  }
+
+  /**
+   * @return the y position of the virtual target in meters
+   */
+  public double getVirtualTargetY() {
+    return virtualTargetY;
+  }
+
+  /**
+   * @return the distance from the robot to the virtual target in meters
+   */
+  public double getDistance() {
+    return distance;
+  }
+
+  /**
+   * @return the shooter velocity for the virtual target in rotations per second
+   */
+  public double getVelocity() {
+    return velocity;
+  }
+
+  /**
+   * @return the field-relative heading from the robot to the virtual target in radians
+   */
+  public double getHeading() {
+    return heading;
+  }
+
+  /**
+   * @return the number of iterations used by the last solve
+   */
+  public int getIterations() {
+    return iterations;
+  }
+
+  /**
+   * @return whether the last solve converged
+   */
+  public boolean isConverged() {
+    return converged;
+  }
+
+  /**
+   * @return how long the last solve took in microseconds
+   */
+  public double getSolveMicros() {
+    return solveNanos / 1e3;
+  }
+}
@@ -45,11 +45,13 @@ import frc.robot.generated.TunerConstants;
 import frc.robot.util.LocalADStarAK;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import org.ejml.simple.SimpleMatrix;
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
 
 public class Drive extends SubsystemBase {
   // TunerConstants doesn't include these constants, so they are declared locally
+  // Initial odometry frequency, adjusted at runtime by OdometryFrequencyController
   static final double ODOMETRY_FREQUENCY = TunerConstants.kCANBus.isNetworkFD() ? 250.0 : 100.0;
   public static final double DRIVE_BASE_RADIUS =
       Math.max(
@@ -98,6 +100,27 @@ public class Drive extends SubsystemBase {
   private SwerveDrivePoseEstimator poseEstimator =
       new SwerveDrivePoseEstimator(kinematics, rawGyroRotation, lastModulePositions, Pose2d.kZero);
 
+  // Reused for every odometry sample so the update loop does not allocate
+  private final SwerveModulePosition[] sampleModulePositions = new SwerveModulePosition[4];
+  private final SwerveModulePosition[] sampleModuleDeltas =
+      new SwerveModulePosition[] {
+        new SwerveModulePosition(),
+        new SwerveModulePosition(),
+        new SwerveModulePosition(),
+        new SwerveModulePosition()
+      };
+  private final OdometryFrequencyController frequencyController =
+      new OdometryFrequencyController(PhoenixOdometryThread.getInstance());
+  private final SignalInterpolator yawInterpolator = new SignalInterpolator(true);
+  private double[] legacyYawPositionsRad = new double[PhoenixOdometryThread.QUEUE_CAPACITY];
+
+  // Field-relative velocity, computed once per cycle so readers that run every loop do not allocate
+  private double fieldVelocityX = 0.0;
+  private double fieldVelocityY = 0.0;
+  // Rows of the forward kinematics that give vx and vy from each module's vx and vy, interleaved
+  private static final double[][] VELOCITY_KINEMATICS = getVelocityKinematics();
+  private static final SwerveModuleState[] EMPTY_MODULE_STATES = new SwerveModuleState[] {};
+
   public Drive(
       GyroIO gyroIO,
       ModuleIO flModuleIO,
@@ -151,13 +174,20 @@ public class Drive extends SubsystemBase {
 
   @Override
   public void periodic() {
-    odometryLock.lock(); // Prevents odometry updates while reading data
+    long periodicStart = System.nanoTime();
+
+    // Capture a consistent batch of odometry samples, then process it outside of the lock
+    PhoenixOdometryThread.getInstance().takeSnapshot();
+
+    // Refresh the other signals of every device at once, then update inputs from the cache
+    PhoenixSignalBatch.getInstance().refresh();
     gyroIO.updateInputs(gyroInputs);
     Logger.processInputs("Drive/Gyro", gyroInputs);
     for (var module : modules) {
       module.periodic();
     }
-    odometryLock.unlock();
+    PhoenixOdometryThread.getInstance().logTelemetry();
+    frequencyController.periodic();
 
     // Stop moving when disabled
     if (DriverStation.isDisabled()) {
@@ -168,44 +198,103 @@ public class Drive extends SubsystemBase {
 
     // Log empty setpoint states when disabled
     if (DriverStation.isDisabled()) {
-      Logger.recordOutput("SwerveStates/Setpoints", new SwerveModuleState[] {});
-      Logger.recordOutput("SwerveStates/SetpointsOptimized", new SwerveModuleState[] {});
+      Logger.recordOutput("SwerveStates/Setpoints", EMPTY_MODULE_STATES);
+      Logger.recordOutput("SwerveStates/SetpointsOptimized", EMPTY_MODULE_STATES);
     }
 
     // Update odometry
     double[] sampleTimestamps =
         modules[0].getOdometryTimestamps(); // All signals are sampled together
     int sampleCount = sampleTimestamps.length;
+    for (var module : modules) {
+      sampleCount = Math.min(sampleCount, module.getOdometrySampleCount());
+    }
+
+    // Gyro yaw is measured at its own hardware timestamps, resample onto the module timeline
+    double[] yawPositionsRad = gyroInputs.odometryYawPositionsRad;
+    int yawCount = yawPositionsRad.length;
+    if (yawCount == 0 && gyroInputs.odometryYawPositions.length > 0) {
+      // Replaying a log recorded before yaw positions were logged in radians
+      yawCount = gyroInputs.odometryYawPositions.length;
+      if (yawCount > legacyYawPositionsRad.length) {
+        legacyYawPositionsRad = new double[yawCount];
+      }
+      for (int i = 0; i < yawCount; i++) {
+        legacyYawPositionsRad[i] = gyroInputs.odometryYawPositions[i].getRadians();
+      }
+      yawPositionsRad = legacyYawPositionsRad;
+    }
+    double[] yawTimestamps =
+        gyroInputs.odometryYawTimestamps.length == yawCount
+            ? gyroInputs.odometryYawTimestamps
+            : sampleTimestamps;
+    yawInterpolator.begin(
+        yawTimestamps, yawPositionsRad, Math.min(yawTimestamps.length, yawCount));
+
     for (int i = 0; i < sampleCount; i++) {
       // Read wheel positions and deltas from each module
-      SwerveModulePosition[] modulePositions = new SwerveModulePosition[4];
-      SwerveModulePosition[] moduleDeltas = new SwerveModulePosition[4];
       for (int moduleIndex = 0; moduleIndex < 4; moduleIndex++) {
-        modulePositions[moduleIndex] = modules[moduleIndex].getOdometryPositions()[i];
-        moduleDeltas[moduleIndex] =
-            new SwerveModulePosition(
-                modulePositions[moduleIndex].distanceMeters
-                    - lastModulePositions[moduleIndex].distanceMeters,
-                modulePositions[moduleIndex].angle);
-        lastModulePositions[moduleIndex] = modulePositions[moduleIndex];
+        SwerveModulePosition position = modules[moduleIndex].getOdometryPositions()[i];
+        SwerveModulePosition lastPosition = lastModulePositions[moduleIndex];
+        sampleModulePositions[moduleIndex] = position;
+        sampleModuleDeltas[moduleIndex].distanceMeters =
+            position.distanceMeters - lastPosition.distanceMeters;
+        sampleModuleDeltas[moduleIndex].angle = position.angle;
+
+        // Copy rather than alias, the module reuses its position buffer next cycle
+        lastPosition.distanceMeters = position.distanceMeters;
+        lastPosition.angle = position.angle;
       }
 
       // Update gyro angle
       if (gyroInputs.connected) {
         // Use the real gyro angle
-        rawGyroRotation = gyroInputs.odometryYawPositions[i];
+        double yawRad = yawInterpolator.valueAt(sampleTimestamps[i]);
+        if (yawRad != rawGyroRotation.getRadians()) {
+          rawGyroRotation = new Rotation2d(yawRad);
+        }
       } else {
         // Use the angle delta from the kinematics and module deltas
-        Twist2d twist = kinematics.toTwist2d(moduleDeltas);
+        Twist2d twist = kinematics.toTwist2d(sampleModuleDeltas);
         rawGyroRotation = rawGyroRotation.plus(new Rotation2d(twist.dtheta));
       }
 
       // Apply update
-      poseEstimator.updateWithTime(sampleTimestamps[i], rawGyroRotation, modulePositions);
+      addOdometrySample(sampleTimestamps[i], rawGyroRotation, sampleModulePositions);
     }
+    yawInterpolator.end();
+
+    // Cache the field-relative velocity, using the same least squares fit as toChassisSpeeds()
+    double vx = 0.0;
+    double vy = 0.0;
+    for (int i = 0; i < 4; i++) {
+      double velocity = modules[i].getVelocityMetersPerSec();
+      Rotation2d angle = modules[i].getAngle();
+      double moduleVx = velocity * angle.getCos();
+      double moduleVy = velocity * angle.getSin();
+      vx += VELOCITY_KINEMATICS[0][2 * i] * moduleVx + VELOCITY_KINEMATICS[0][2 * i + 1] * moduleVy;
+      vy += VELOCITY_KINEMATICS[1][2 * i] * moduleVx + VELOCITY_KINEMATICS[1][2 * i + 1] * moduleVy;
+    }
+    Rotation2d rotation = getRotation();
+    fieldVelocityX = vx * rotation.getCos() - vy * rotation.getSin();
+    fieldVelocityY = vx * rotation.getSin() + vy * rotation.getCos();
 
     // Update gyro alert
     gyroDisconnectedAlert.set(!gyroInputs.connected && Constants.currentMode != Mode.SIM);
+
+    // Record loop timing
+    Logger.recordOutput(
+        "Drive/SignalRefreshMs", PhoenixSignalBatch.getInstance().getLastRefreshMs());
+    Logger.recordOutput("Drive/PeriodicMs", (System.nanoTime() - periodicStart) / 1e6);
+  }
+
+  /**
+   * Adds one odometry sample to the pose estimator. Tests override this to measure the rest of the
+   * odometry update on its own, since the estimator allocates inside WPILib.
+   */
+  void addOdometrySample(
+      double timestamp, Rotation2d gyroRotation, SwerveModulePosition[] modulePositions) {
+    poseEstimator.updateWithTime(timestamp, gyroRotation, modulePositions);
   }
 
   /**
@@ -294,6 +383,22 @@ public class Drive extends SubsystemBase {
     return kinematics.toChassisSpeeds(getModuleStates());
   }
 
+  /**
+   * Returns the measured x velocity of the robot relative to the field in meters per second, as of
+   * the last periodic(). Does not allocate.
+   */
+  public double getFieldVelocityX() {
+    return fieldVelocityX;
+  }
+
+  /**
+   * Returns the measured y velocity of the robot relative to the field in meters per second, as of
+   * the last periodic(). Does not allocate.
+   */
+  public double getFieldVelocityY() {
+    return fieldVelocityY;
+  }
+
   /** Returns the position of each module in radians. */
   public double[] getWheelRadiusCharacterizationPositions() {
     double[] values = new double[4];
@@ -348,6 +453,27 @@ public class Drive extends SubsystemBase {
   }
 
   /** Returns an array of module translations. */
+  /**
+   * Returns the vx and vy rows of the pseudo-inverse of the inverse kinematics matrix, matching
+   * {@link SwerveDriveKinematics#toChassisSpeeds}.
+   */
+  private static double[][] getVelocityKinematics() {
+    Translation2d[] translations = getModuleTranslations();
+    SimpleMatrix inverseKinematics = new SimpleMatrix(translations.length * 2, 3);
+    for (int i = 0; i < translations.length; i++) {
+      inverseKinematics.setRow(2 * i, 0, 1, 0, -translations[i].getY());
+      inverseKinematics.setRow(2 * i + 1, 0, 0, 1, translations[i].getX());
+    }
+    SimpleMatrix forwardKinematics = inverseKinematics.pseudoInverse();
+    double[][] rows = new double[2][translations.length * 2];
+    for (int row = 0; row < 2; row++) {
+      for (int col = 0; col < rows[row].length; col++) {
+        rows[row][col] = forwardKinematics.get(row, col);
+      }
+    }
+    return rows;
+  }
+
   public static Translation2d[] getModuleTranslations() {
     return new Translation2d[] {
       new Translation2d(TunerConstants.FrontLeft.LocationX, TunerConstants.FrontLeft.LocationY),
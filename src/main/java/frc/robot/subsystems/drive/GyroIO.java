@@ -17,6 +17,9 @@ public interface GyroIO {
     public Rotation2d yawPosition = Rotation2d.kZero;
     public double yawVelocityRadPerSec = 0.0;
     public double[] odometryYawTimestamps = new double[] {};
+    public double[] odometryYawPositionsRad = new double[] {};
+
+    // Replaced by odometryYawPositionsRad, only populated when replaying older logs
     public Rotation2d[] odometryYawPositions = new Rotation2d[] {};
   }
 
@@ -11,13 +11,15 @@ import com.studica.frc.AHRS;
 import com.studica.frc.AHRS.NavXComType;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
-import java.util.Queue;
+import frc.robot.util.DoubleRingBuffer;
+import java.util.Arrays;
 
 /** IO implementation for NavX. */
 public class GyroIONavX implements GyroIO {
   private final AHRS navX = new AHRS(NavXComType.kMXP_SPI, (byte) Drive.ODOMETRY_FREQUENCY);
-  private final Queue<Double> yawPositionQueue;
-  private final Queue<Double> yawTimestampQueue;
+  private final DoubleRingBuffer yawPositionQueue;
+  private final DoubleRingBuffer yawTimestampQueue;
+  private final double[] odometryBuffer = new double[PhoenixOdometryThread.QUEUE_CAPACITY];
 
   public GyroIONavX() {
     yawTimestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue();
@@ -30,13 +32,12 @@ public class GyroIONavX implements GyroIO {
     inputs.yawPosition = Rotation2d.fromDegrees(-navX.getYaw());
     inputs.yawVelocityRadPerSec = Units.degreesToRadians(-navX.getRawGyroZ());
 
-    inputs.odometryYawTimestamps =
-        yawTimestampQueue.stream().mapToDouble((Double value) -> value).toArray();
-    inputs.odometryYawPositions =
-        yawPositionQueue.stream()
-            .map((Double value) -> Rotation2d.fromDegrees(-value))
-            .toArray(Rotation2d[]::new);
-    yawTimestampQueue.clear();
-    yawPositionQueue.clear();
+    int sampleCount = yawTimestampQueue.drainSnapshotTo(odometryBuffer);
+    inputs.odometryYawTimestamps = Arrays.copyOf(odometryBuffer, sampleCount);
+    sampleCount = yawPositionQueue.drainSnapshotTo(odometryBuffer);
+    inputs.odometryYawPositionsRad = new double[sampleCount];
+    for (int i = 0; i < sampleCount; i++) {
+      inputs.odometryYawPositionsRad[i] = Units.degreesToRadians(-odometryBuffer[i]);
+    }
   }
 }
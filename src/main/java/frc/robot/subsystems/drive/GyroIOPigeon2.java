@@ -8,7 +8,6 @@
 package frc.robot.subsystems.drive;
 
 import com.ctre.phoenix6.BaseStatusSignal;
-import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.Pigeon2Configuration;
 import com.ctre.phoenix6.hardware.Pigeon2;
@@ -17,16 +16,19 @@ import edu.wpi.first.math.util.Units;
 import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.units.measure.AngularVelocity;
 import frc.robot.generated.TunerConstants;
-import java.util.Queue;
+import frc.robot.util.DoubleRingBuffer;
+import java.util.Arrays;
 
 /** IO implementation for Pigeon 2. */
 public class GyroIOPigeon2 implements GyroIO {
   private final Pigeon2 pigeon =
       new Pigeon2(TunerConstants.DrivetrainConstants.Pigeon2Id, TunerConstants.kCANBus);
   private final StatusSignal<Angle> yaw = pigeon.getYaw();
-  private final Queue<Double> yawPositionQueue;
-  private final Queue<Double> yawTimestampQueue;
+  private final DoubleRingBuffer yawPositionQueue;
+  private final DoubleRingBuffer yawTimestampQueue;
+  private final double[] odometryBuffer = new double[PhoenixOdometryThread.QUEUE_CAPACITY];
   private final StatusSignal<AngularVelocity> yawVelocity = pigeon.getAngularVelocityZWorld();
+  private final BaseStatusSignal[] signals = new BaseStatusSignal[] {yaw, yawVelocity};
 
   public GyroIOPigeon2() {
     if (TunerConstants.DrivetrainConstants.Pigeon2Configs != null) {
@@ -39,23 +41,24 @@ public class GyroIOPigeon2 implements GyroIO {
     yaw.setUpdateFrequency(Drive.ODOMETRY_FREQUENCY);
     yawVelocity.setUpdateFrequency(50.0);
     pigeon.optimizeBusUtilization();
-    yawTimestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue();
-    yawPositionQueue = PhoenixOdometryThread.getInstance().registerSignal(yaw.clone());
+    yawPositionQueue = PhoenixOdometryThread.getInstance().registerSignal(pigeon, yaw.clone());
+    yawTimestampQueue = PhoenixOdometryThread.getInstance().makeTimestampQueue(yawPositionQueue);
+    PhoenixSignalBatch.getInstance().register(signals);
   }
 
   @Override
   public void updateInputs(GyroIOInputs inputs) {
-    inputs.connected = BaseStatusSignal.refreshAll(yaw, yawVelocity).equals(StatusCode.OK);
+    // Signals were already refreshed by PhoenixSignalBatch, only read the cached values
+    inputs.connected = BaseStatusSignal.isAllGood(signals);
     inputs.yawPosition = Rotation2d.fromDegrees(yaw.getValueAsDouble());
     inputs.yawVelocityRadPerSec = Units.degreesToRadians(yawVelocity.getValueAsDouble());
 
-    inputs.odometryYawTimestamps =
-        yawTimestampQueue.stream().mapToDouble((Double value) -> value).toArray();
-    inputs.odometryYawPositions =
-        yawPositionQueue.stream()
-            .map((Double value) -> Rotation2d.fromDegrees(value))
-            .toArray(Rotation2d[]::new);
-    yawTimestampQueue.clear();
-    yawPositionQueue.clear();
+    int sampleCount = yawTimestampQueue.drainSnapshotTo(odometryBuffer);
+    inputs.odometryYawTimestamps = Arrays.copyOf(odometryBuffer, sampleCount);
+    sampleCount = yawPositionQueue.drainSnapshotTo(odometryBuffer);
+    inputs.odometryYawPositionsRad = new double[sampleCount];
+    for (int i = 0; i < sampleCount; i++) {
+      inputs.odometryYawPositionsRad[i] = Units.degreesToRadians(odometryBuffer[i]);
+    }
   }
 }
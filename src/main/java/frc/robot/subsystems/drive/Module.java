@@ -29,7 +29,16 @@ public class Module {
   private final Alert driveDisconnectedAlert;
   private final Alert turnDisconnectedAlert;
   private final Alert turnEncoderDisconnectedAlert;
-  private SwerveModulePosition[] odometryPositions = new SwerveModulePosition[] {};
+  private final String inputsKey;
+
+  // Reused every cycle so odometry integration does not allocate per sample
+  private SwerveModulePosition[] odometryPositions =
+      new SwerveModulePosition[PhoenixOdometryThread.QUEUE_CAPACITY];
+  private int odometrySampleCount = 0;
+  private double[] legacyTurnPositionsRad = new double[PhoenixOdometryThread.QUEUE_CAPACITY];
+  private Rotation2d odometryAngle = Rotation2d.kZero;
+  private final SignalInterpolator driveInterpolator = new SignalInterpolator(false);
+  private final SignalInterpolator turnInterpolator = new SignalInterpolator(true);
 
   public Module(
       ModuleIO io,
@@ -50,20 +59,59 @@ public class Module {
         new Alert(
             "Disconnected turn encoder on module " + Integer.toString(index) + ".",
             AlertType.kError);
+    inputsKey = "Drive/Module" + Integer.toString(index);
+    for (int i = 0; i < odometryPositions.length; i++) {
+      odometryPositions[i] = new SwerveModulePosition();
+    }
   }
 
   public void periodic() {
     io.updateInputs(inputs);
-    Logger.processInputs("Drive/Module" + Integer.toString(index), inputs);
-
-    // Calculate positions for odometry
-    int sampleCount = inputs.odometryTimestamps.length; // All signals are sampled together
-    odometryPositions = new SwerveModulePosition[sampleCount];
+    Logger.processInputs(inputsKey, inputs);
+
+    // Calculate positions for odometry, resampling each signal from its own hardware timestamps
+    // onto the shared sample timeline
+    int sampleCount = inputs.odometryTimestamps.length;
+    double[] turnPositionsRad = inputs.odometryTurnPositionsRad;
+    int turnCount = turnPositionsRad.length;
+    if (turnCount == 0 && inputs.odometryTurnPositions.length > 0) {
+      // Replaying a log recorded before turn positions were logged in radians
+      turnCount = inputs.odometryTurnPositions.length;
+      if (turnCount > legacyTurnPositionsRad.length) {
+        legacyTurnPositionsRad = new double[turnCount];
+      }
+      for (int i = 0; i < turnCount; i++) {
+        legacyTurnPositionsRad[i] = inputs.odometryTurnPositions[i].getRadians();
+      }
+      turnPositionsRad = legacyTurnPositionsRad;
+    }
+    if (sampleCount > odometryPositions.length) {
+      // Only reachable when replaying a log recorded with deeper odometry queues
+      growOdometryBuffers(sampleCount);
+    }
+    double[] driveTimestamps =
+        signalTimestamps(inputs.odometryDriveTimestamps, inputs.odometryDrivePositionsRad.length);
+    double[] turnTimestamps = signalTimestamps(inputs.odometryTurnTimestamps, turnCount);
+    driveInterpolator.begin(
+        driveTimestamps,
+        inputs.odometryDrivePositionsRad,
+        Math.min(driveTimestamps.length, inputs.odometryDrivePositionsRad.length));
+    turnInterpolator.begin(
+        turnTimestamps, turnPositionsRad, Math.min(turnTimestamps.length, turnCount));
     for (int i = 0; i < sampleCount; i++) {
-      double positionMeters = inputs.odometryDrivePositionsRad[i] * constants.WheelRadius;
-      Rotation2d angle = inputs.odometryTurnPositions[i];
-      odometryPositions[i] = new SwerveModulePosition(positionMeters, angle);
+      double timestamp = inputs.odometryTimestamps[i];
+      // Only build a new angle (and compute its sine and cosine) when the turn position changes
+      double turnPositionRad = turnInterpolator.valueAt(timestamp);
+      if (turnPositionRad != odometryAngle.getRadians()) {
+        odometryAngle = new Rotation2d(turnPositionRad);
+      }
+      odometryPositions[i].distanceMeters =
+          driveInterpolator.valueAt(timestamp) * constants.WheelRadius;
+      odometryPositions[i].angle = odometryAngle;
     }
+    driveInterpolator.end();
+    turnInterpolator.end();
+    odometrySampleCount = sampleCount;
 
     // Update alerts
     driveDisconnectedAlert.set(!inputs.driveConnected);
@@ -71,6 +119,23 @@ public class Module {
     turnEncoderDisconnectedAlert.set(!inputs.turnEncoderConnected);
   }
 
+  /**
+   * Returns the per-signal timestamps if the IO implementation provided them, otherwise the shared
+   * sample timestamps (simulation, or logs recorded before per-signal timestamps were added).
+   */
+  private double[] signalTimestamps(double[] timestamps, int valueCount) {
+    return timestamps.length == valueCount ? timestamps : inputs.odometryTimestamps;
+  }
+
+  private void growOdometryBuffers(int capacity) {
+    SwerveModulePosition[] grown = new SwerveModulePosition[capacity];
+    System.arraycopy(odometryPositions, 0, grown, 0, odometryPositions.length);
+    for (int i = odometryPositions.length; i < capacity; i++) {
+      grown[i] = new SwerveModulePosition();
+    }
+    odometryPositions = grown;
+  }
+
   /** Runs the module with the specified setpoint state. Mutates the state to optimize it. */
   public void runSetpoint(SwerveModuleState state) {
     // Optimize velocity setpoint
@@ -119,11 +184,20 @@ public class Module {
     return new SwerveModuleState(getVelocityMetersPerSec(), getAngle());
   }
 
-  /** Returns the module positions received this cycle. */
+  /**
+   * Returns the module positions received this cycle. The array is reused between cycles, so only
+   * the first {@link #getOdometrySampleCount()} entries are valid and they are overwritten by the
+   * next call to {@link #periodic()}.
+   */
   public SwerveModulePosition[] getOdometryPositions() {
     return odometryPositions;
   }
 
+  /** Returns the number of odometry samples received this cycle. */
+  public int getOdometrySampleCount() {
+    return odometrySampleCount;
+  }
+
   /** Returns the timestamps of the samples received this cycle. */
   public double[] getOdometryTimestamps() {
     return inputs.odometryTimestamps;
@@ -29,6 +29,11 @@ public interface ModuleIO {
 
     public double[] odometryTimestamps = new double[] {};
     public double[] odometryDrivePositionsRad = new double[] {};
+    public double[] odometryDriveTimestamps = new double[] {};
+    public double[] odometryTurnPositionsRad = new double[] {};
+    public double[] odometryTurnTimestamps = new double[] {};
+
+    // Replaced by odometryTurnPositionsRad, only populated when replaying older logs
     public Rotation2d[] odometryTurnPositions = new Rotation2d[] {};
   }
 
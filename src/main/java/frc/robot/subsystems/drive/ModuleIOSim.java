@@ -108,7 +108,7 @@ public class ModuleIOSim implements ModuleIO {
     // matter)
     inputs.odometryTimestamps = new double[] {Timer.getFPGATimestamp()};
     inputs.odometryDrivePositionsRad = new double[] {inputs.drivePositionRad};
-    inputs.odometryTurnPositions = new Rotation2d[] {inputs.turnPosition};
+    inputs.odometryTurnPositionsRad = new double[] {inputs.turnPosition.getRadians()};
   }
 
   @Override
@@ -35,7 +35,8 @@ import edu.wpi.first.units.measure.AngularVelocity;
 import edu.wpi.first.units.measure.Current;
 import edu.wpi.first.units.measure.Voltage;
 import frc.robot.generated.TunerConstants;
-import java.util.Queue;
+import frc.robot.util.DoubleRingBuffer;
+import java.util.Arrays;
 
 /**
  * Module IO implementation for Talon FX drive motor controller, Talon FX turn motor controller, and
@@ -66,11 +67,13 @@ public class ModuleIOTalonFX implements ModuleIO {
       new VelocityTorqueCurrentFOC(0.0);
 
   // Timestamp inputs from Phoenix thread
-  private final Queue<Double> timestampQueue;
+  private final DoubleRingBuffer timestampQueue;
+  private final double[] odometryBuffer = new double[PhoenixOdometryThread.QUEUE_CAPACITY];
 
   // Inputs from drive motor
   private final StatusSignal<Angle> drivePosition;
-  private final Queue<Double> drivePositionQueue;
+  private final DoubleRingBuffer drivePositionQueue;
+  private final DoubleRingBuffer drivePositionTimestampQueue;
   private final StatusSignal<AngularVelocity> driveVelocity;
   private final StatusSignal<Voltage> driveAppliedVolts;
   private final StatusSignal<Current> driveCurrent;
@@ -78,11 +81,17 @@ public class ModuleIOTalonFX implements ModuleIO {
   // Inputs from turn motor
   private final StatusSignal<Angle> turnAbsolutePosition;
   private final StatusSignal<Angle> turnPosition;
-  private final Queue<Double> turnPositionQueue;
+  private final DoubleRingBuffer turnPositionQueue;
+  private final DoubleRingBuffer turnPositionTimestampQueue;
   private final StatusSignal<AngularVelocity> turnVelocity;
   private final StatusSignal<Voltage> turnAppliedVolts;
   private final StatusSignal<Current> turnCurrent;
 
+  // Signals grouped by device, refreshed together by PhoenixSignalBatch
+  private final BaseStatusSignal[] driveSignals;
+  private final BaseStatusSignal[] turnSignals;
+  private final BaseStatusSignal[] turnEncoderSignals;
+
   // Connection debouncers
   private final Debouncer driveConnectedDebounce =
       new Debouncer(0.5, Debouncer.DebounceType.kFalling);
@@ -155,7 +164,10 @@ public class ModuleIOTalonFX implements ModuleIO {
 
     // Create drive status signals
     drivePosition = driveTalon.getPosition();
-    drivePositionQueue = PhoenixOdometryThread.getInstance().registerSignal(drivePosition.clone());
+    drivePositionQueue =
+        PhoenixOdometryThread.getInstance().registerSignal(driveTalon, drivePosition.clone());
+    drivePositionTimestampQueue =
+        PhoenixOdometryThread.getInstance().makeTimestampQueue(drivePositionQueue);
     driveVelocity = driveTalon.getVelocity();
     driveAppliedVolts = driveTalon.getMotorVoltage();
     driveCurrent = driveTalon.getStatorCurrent();
@@ -163,7 +175,10 @@ public class ModuleIOTalonFX implements ModuleIO {
     // Create turn status signals
     turnAbsolutePosition = cancoder.getAbsolutePosition();
     turnPosition = turnTalon.getPosition();
-    turnPositionQueue = PhoenixOdometryThread.getInstance().registerSignal(turnPosition.clone());
+    turnPositionQueue =
+        PhoenixOdometryThread.getInstance().registerSignal(turnTalon, turnPosition.clone());
+    turnPositionTimestampQueue =
+        PhoenixOdometryThread.getInstance().makeTimestampQueue(turnPositionQueue);
     turnVelocity = turnTalon.getVelocity();
     turnAppliedVolts = turnTalon.getMotorVoltage();
     turnCurrent = turnTalon.getStatorCurrent();
@@ -181,27 +196,33 @@ public class ModuleIOTalonFX implements ModuleIO {
         turnAppliedVolts,
         turnCurrent);
     ParentDevice.optimizeBusUtilizationForAll(driveTalon, turnTalon);
+
+    // Register signals to be refreshed once per loop with the rest of the drive
+    driveSignals =
+        new BaseStatusSignal[] {drivePosition, driveVelocity, driveAppliedVolts, driveCurrent};
+    turnSignals =
+        new BaseStatusSignal[] {turnPosition, turnVelocity, turnAppliedVolts, turnCurrent};
+    turnEncoderSignals = new BaseStatusSignal[] {turnAbsolutePosition};
+    PhoenixSignalBatch.getInstance().register(driveSignals);
+    PhoenixSignalBatch.getInstance().register(turnSignals);
+    PhoenixSignalBatch.getInstance().register(turnEncoderSignals);
   }
 
   @Override
   public void updateInputs(ModuleIOInputs inputs) {
-    // Refresh all signals
-    var driveStatus =
-        BaseStatusSignal.refreshAll(drivePosition, driveVelocity, driveAppliedVolts, driveCurrent);
-    var turnStatus =
-        BaseStatusSignal.refreshAll(turnPosition, turnVelocity, turnAppliedVolts, turnCurrent);
-    var turnEncoderStatus = BaseStatusSignal.refreshAll(turnAbsolutePosition);
-
+    // Signals were already refreshed by PhoenixSignalBatch, only read the cached values
     // Update drive inputs
-    inputs.driveConnected = driveConnectedDebounce.calculate(driveStatus.isOK());
+    inputs.driveConnected =
+        driveConnectedDebounce.calculate(BaseStatusSignal.isAllGood(driveSignals));
     inputs.drivePositionRad = Units.rotationsToRadians(drivePosition.getValueAsDouble());
     inputs.driveVelocityRadPerSec = Units.rotationsToRadians(driveVelocity.getValueAsDouble());
     inputs.driveAppliedVolts = driveAppliedVolts.getValueAsDouble();
     inputs.driveCurrentAmps = driveCurrent.getValueAsDouble();
 
     // Update turn inputs
-    inputs.turnConnected = turnConnectedDebounce.calculate(turnStatus.isOK());
-    inputs.turnEncoderConnected = turnEncoderConnectedDebounce.calculate(turnEncoderStatus.isOK());
+    inputs.turnConnected = turnConnectedDebounce.calculate(BaseStatusSignal.isAllGood(turnSignals));
+    inputs.turnEncoderConnected =
+        turnEncoderConnectedDebounce.calculate(BaseStatusSignal.isAllGood(turnEncoderSignals));
     inputs.turnAbsolutePosition = Rotation2d.fromRotations(turnAbsolutePosition.getValueAsDouble());
     inputs.turnPosition = Rotation2d.fromRotations(turnPosition.getValueAsDouble());
     inputs.turnVelocityRadPerSec = Units.rotationsToRadians(turnVelocity.getValueAsDouble());
@@ -209,19 +230,22 @@ public class ModuleIOTalonFX implements ModuleIO {
     inputs.turnCurrentAmps = turnCurrent.getValueAsDouble();
 
     // Update odometry inputs
-    inputs.odometryTimestamps =
-        timestampQueue.stream().mapToDouble((Double value) -> value).toArray();
-    inputs.odometryDrivePositionsRad =
-        drivePositionQueue.stream()
-            .mapToDouble((Double value) -> Units.rotationsToRadians(value))
-            .toArray();
-    inputs.odometryTurnPositions =
-        turnPositionQueue.stream()
-            .map((Double value) -> Rotation2d.fromRotations(value))
-            .toArray(Rotation2d[]::new);
-    timestampQueue.clear();
-    drivePositionQueue.clear();
-    turnPositionQueue.clear();
+    int sampleCount = timestampQueue.drainSnapshotTo(odometryBuffer);
+    inputs.odometryTimestamps = Arrays.copyOf(odometryBuffer, sampleCount);
+    sampleCount = drivePositionQueue.drainSnapshotTo(odometryBuffer);
+    inputs.odometryDrivePositionsRad = new double[sampleCount];
+    for (int i = 0; i < sampleCount; i++) {
+      inputs.odometryDrivePositionsRad[i] = Units.rotationsToRadians(odometryBuffer[i]);
+    }
+    sampleCount = drivePositionTimestampQueue.drainSnapshotTo(odometryBuffer);
+    inputs.odometryDriveTimestamps = Arrays.copyOf(odometryBuffer, sampleCount);
+    sampleCount = turnPositionQueue.drainSnapshotTo(odometryBuffer);
+    inputs.odometryTurnPositionsRad = new double[sampleCount];
+    for (int i = 0; i < sampleCount; i++) {
+      inputs.odometryTurnPositionsRad[i] = Units.rotationsToRadians(odometryBuffer[i]);
+    }
+    sampleCount = turnPositionTimestampQueue.drainSnapshotTo(odometryBuffer);
+    inputs.odometryTurnTimestamps = Arrays.copyOf(odometryBuffer, sampleCount);
   }
 
   @Override
@@ -0,0 +1,113 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.Constants;
+import frc.robot.Constants.Mode;
+import frc.robot.generated.TunerConstants;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Adjusts the odometry sampling frequency at runtime based on the measured CAN bus utilization and
+ * the health of the odometry thread. The frequency drops as soon as the bus is saturated or samples
+ * arrive late, and only rises again after the bus has stayed quiet for several windows, so it does
+ * not oscillate around a threshold. Only active on a real robot.
+ *
+ * <p>Reading the bus status blocks until the CAN driver answers, so it is polled by a background
+ * {@link Notifier} and handed to the main loop through a volatile field.
+ */
+public class OdometryFrequencyController {
+  private static final double WINDOW_SECS = 0.5;
+  private static final double MIN_FREQUENCY = 50.0;
+  private static final double MAX_FREQUENCY =
+      TunerConstants.kCANBus.isNetworkFD() ? 300.0 : 200.0;
+  private static final double FREQUENCY_STEP = 25.0;
+  private static final double HIGH_UTILIZATION = 0.8; // Lower above this
+  private static final double LOW_UTILIZATION = 0.6; // Raise below this
+  private static final double MAX_OVERRUN_RATE = 0.05; // Fraction of samples that may be late
+  private static final int RAISE_WINDOWS = 4; // Quiet windows required before raising
+
+  private final PhoenixOdometryThread thread;
+  private double windowStart = 0.0;
+  private int windowSamples = 0;
+  private int windowOverruns = 0;
+  private int windowTimeouts = 0;
+  private int quietWindows = 0;
+  private int changeCount = 0;
+
+  // Written by the bus status notifier, NaN until the first read completes
+  private volatile double busUtilization = Double.NaN;
+  private Notifier busStatusNotifier;
+
+  public OdometryFrequencyController(PhoenixOdometryThread thread) {
+    this.thread = thread;
+    if (Constants.currentMode == Mode.REAL) {
+      busStatusNotifier =
+          new Notifier(() -> busUtilization = TunerConstants.kCANBus.getStatus().BusUtilization);
+      busStatusNotifier.setName("OdometryBusStatus");
+      busStatusNotifier.startPeriodic(WINDOW_SECS);
+    }
+  }
+
+  /**
+   * Collects the last cycle of odometry thread telemetry and updates the requested frequency at the
+   * end of each window. Call once per main loop cycle, after {@link
+   * PhoenixOdometryThread#logTelemetry()}.
+   */
+  public void periodic() {
+    if (Constants.currentMode != Mode.REAL) {
+      return;
+    }
+
+    windowSamples += thread.getLastSampleCount();
+    windowOverruns += thread.getLastOverruns();
+    windowTimeouts += thread.getLastTimeouts();
+    double now = RobotController.getFPGATime() / 1e6;
+    if (now - windowStart < WINDOW_SECS) {
+      return;
+    }
+    windowStart = now;
+
+    // NaN before the first bus status read, which matches neither utilization threshold
+    double utilization = busUtilization;
+    double overrunRate = windowSamples > 0 ? (double) windowOverruns / windowSamples : 0.0;
+    Logger.recordOutput("Odometry/FrequencyController/BusUtilization", utilization);
+    Logger.recordOutput("Odometry/FrequencyController/OverrunRate", overrunRate);
+
+    double frequency = thread.getFrequency();
+    if (utilization > HIGH_UTILIZATION) {
+      quietWindows = 0;
+      request(frequency - FREQUENCY_STEP, "Bus utilization high");
+    } else if (windowTimeouts > 0) {
+      quietWindows = 0;
+      request(frequency - FREQUENCY_STEP, "Signal timeouts");
+    } else if (overrunRate > MAX_OVERRUN_RATE) {
+      quietWindows = 0;
+      request(frequency - FREQUENCY_STEP, "Sample overruns");
+    } else if (utilization < LOW_UTILIZATION) {
+      quietWindows++;
+      if (quietWindows >= RAISE_WINDOWS) {
+        quietWindows = 0;
+        request(frequency + FREQUENCY_STEP, "Bus utilization low");
+      }
+    } else {
+      quietWindows = 0;
+    }
+
+    windowSamples = 0;
+    windowOverruns = 0;
+    windowTimeouts = 0;
+  }
+
+  private void request(double frequency, String reason) {
+    frequency = Math.max(MIN_FREQUENCY, Math.min(MAX_FREQUENCY, frequency));
+    if (frequency == thread.getFrequency()) {
+      return;
+    }
+    thread.setFrequency(frequency);
+    changeCount++;
+    Logger.recordOutput("Odometry/FrequencyController/RequestedFrequencyHz", frequency);
+    Logger.recordOutput("Odometry/FrequencyController/ChangeReason", reason);
+    Logger.recordOutput("Odometry/FrequencyController/ChangeCount", changeCount);
+  }
+}
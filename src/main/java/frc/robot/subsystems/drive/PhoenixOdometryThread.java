@@ -9,16 +9,24 @@ package frc.robot.subsystems.drive;
 
 import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.Utils;
+import com.ctre.phoenix6.hardware.ParentDevice;
 import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.wpilibj.RobotController;
 import frc.robot.generated.TunerConstants;
+import frc.robot.util.DoubleRingBuffer;
+import frc.robot.util.FixedHistogram;
+import frc.robot.util.ThreadSchedulingPolicy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.DoubleSupplier;
+import java.util.stream.IntStream;
+import org.littletonrobotics.junction.Logger;
 
 /**
  * Provides an interface for asynchronously reading high-frequency measurements to a set of queues.
@@ -26,16 +34,69 @@ import java.util.function.DoubleSupplier;
  * <p>This version is intended for Phoenix 6 devices on both the RIO and CANivore buses. When using
  * a CANivore, the thread uses the "waitForAll" blocking method to enable more consistent sampling.
  * This also allows Phoenix Pro users to benefit from lower latency between devices using CANivore
- * time synchronization.
+ * time synchronization. On other buses, samples are taken at fixed absolute deadlines so the period
+ * does not drift by the time spent refreshing, and signals are refreshed one device at a time. Each
+ * device is stamped when its own refresh returns, so a slow device does not skew the timestamps of
+ * the devices refreshed after it.
+ *
+ * <p>Samples are handed to the main thread through primitive single-producer/single-consumer ring
+ * buffers, so reading a sample does not box a value or allocate on the odometry thread. Sample
+ * period, jitter, per-signal latency, timeouts, and dropped samples are accumulated in fixed-size
+ * histograms and logged once per main loop cycle by {@link #logTelemetry()}.
+ *
+ * <p>Phoenix signals can also report their own hardware timestamps through {@link
+ * #makeTimestampQueue(DoubleRingBuffer)}. These are converted to the FPGA timebase using a
+ * continuously estimated offset between the Phoenix and FPGA clocks.
  */
 public class PhoenixOdometryThread extends Thread {
+  /** Maximum number of samples buffered per signal between main loop cycles. */
+  static final int QUEUE_CAPACITY = 20;
+
   private final Lock signalsLock =
       new ReentrantLock(); // Prevents conflicts when registering signals
   private BaseStatusSignal[] phoenixSignals = new BaseStatusSignal[0];
+  private BaseStatusSignal[][] phoenixSignalGroups = new BaseStatusSignal[0][]; // One per device
+  private int[][] phoenixSignalGroupIndices = new int[0][]; // Signal indices of each group
+  private final List<Object> phoenixSignalDevices = new ArrayList<>();
   private final List<DoubleSupplier> genericSignals = new ArrayList<>();
-  private final List<Queue<Double>> phoenixQueues = new ArrayList<>();
-  private final List<Queue<Double>> genericQueues = new ArrayList<>();
-  private final List<Queue<Double>> timestampQueues = new ArrayList<>();
+  private final List<DoubleRingBuffer> phoenixQueues = new ArrayList<>();
+  private final List<DoubleRingBuffer> phoenixTimestampQueues = new ArrayList<>(); // May be null
+  private final List<DoubleRingBuffer> genericQueues = new ArrayList<>();
+  private final List<DoubleRingBuffer> timestampQueues = new ArrayList<>();
+
+  // Lock wait times, reported to show that neither thread stalls the other
+  private final AtomicLong threadLockWaitMaxNanos = new AtomicLong();
+  private long mainLockWaitNanos = 0;
+
+  // Sample statistics, written by the odometry thread and swapped out by takeSnapshot()
+  private SampleStats activeStats = new SampleStats();
+  private SampleStats publishedStats = new SampleStats();
+  private double[] signalLatencies = new double[0]; // Only used by the odometry thread
+  private double[] signalTimestamps = new double[0]; // Only used by the odometry thread
+  private double[] signalRefreshTimes = new double[0]; // Only used by the odometry thread
+  private double[] signalLatencyMeansMs = new double[0];
+  private double[] signalLatencyMaxesMs = new double[0];
+  private long totalTimeouts = 0;
+  private long totalDroppedSamples = 0;
+  private double lastTelemetryTimestamp = 0.0;
+  private double lastJitterP99 = 0.0;
+  private int lastSampleCount = 0;
+  private int lastOverruns = 0;
+  private int lastTimeouts = 0;
+  private long totalDeadlineMisses = 0;
+
+  // Sampling frequency requested by the main thread, applied by the odometry thread itself
+  private volatile double requestedFrequency = Drive.ODOMETRY_FREQUENCY;
+  private volatile double frequency = Drive.ODOMETRY_FREQUENCY;
+
+  // Scheduling policy requested by the main thread, applied by the odometry thread itself
+  private volatile ThreadSchedulingPolicy requestedPolicy = null;
+  private ThreadSchedulingPolicy appliedPolicy = null; // Only used by the odometry thread
+
+  // Estimated FPGA time minus Phoenix time, used to convert signal timestamps
+  private static final double CLOCK_OFFSET_MAX_READ_TIME = 0.0001; // Secs
+  private static final double CLOCK_OFFSET_FILTER_GAIN = 0.01;
+  private volatile double clockOffset = Double.NaN;
 
   private static boolean isCANFD = TunerConstants.kCANBus.isNetworkFD();
   private static PhoenixOdometryThread instance = null;
@@ -59,9 +120,150 @@ public class PhoenixOdometryThread extends Thread {
     }
   }
 
-  /** Registers a Phoenix signal to be read from the thread. */
-  public Queue<Double> registerSignal(StatusSignal<Angle> signal) {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
+  /**
+   * Captures a consistent set of samples across every queue. Must be called from the main thread
+   * before the IO implementations drain their queues with {@link
+   * DoubleRingBuffer#drainSnapshotTo(double[])}. The odometry lock is only held while the queue
+   * indices are copied, so the odometry thread is never blocked while inputs are processed.
+   */
+  public void takeSnapshot() {
+    long waitStart = System.nanoTime();
+    Drive.odometryLock.lock();
+    mainLockWaitNanos = System.nanoTime() - waitStart;
+    try {
+      SampleStats stats = publishedStats;
+      publishedStats = activeStats;
+      activeStats = stats;
+      for (int i = 0; i < phoenixQueues.size(); i++) {
+        phoenixQueues.get(i).snapshot();
+        if (phoenixTimestampQueues.get(i) != null) {
+          phoenixTimestampQueues.get(i).snapshot();
+        }
+      }
+      for (int i = 0; i < genericQueues.size(); i++) {
+        genericQueues.get(i).snapshot();
+      }
+      for (int i = 0; i < timestampQueues.size(); i++) {
+        timestampQueues.get(i).snapshot();
+      }
+    } finally {
+      Drive.odometryLock.unlock();
+    }
+  }
+
+  /**
+   * Logs odometry thread telemetry for the samples captured by the last {@link #takeSnapshot()}.
+   * Call once per main loop cycle, after taking the snapshot.
+   */
+  public void logTelemetry() {
+    SampleStats stats = publishedStats;
+    double now = RobotController.getFPGATime() / 1e6;
+    double elapsed = now - lastTelemetryTimestamp;
+    lastTelemetryTimestamp = now;
+    totalTimeouts += stats.timeouts;
+    totalDroppedSamples += stats.droppedSamples;
+    totalDeadlineMisses += stats.deadlineMisses;
+
+    Logger.recordOutput(
+        "Odometry/Thread/SampleRateHz", elapsed > 0.0 ? stats.sampleCount / elapsed : 0.0);
+    Logger.recordOutput("Odometry/Thread/PeriodMeanMs", stats.period.getMean() * 1e3);
+    Logger.recordOutput("Odometry/Thread/PeriodMaxMs", stats.period.getMax() * 1e3);
+    Logger.recordOutput(
+        "Odometry/Thread/PeriodErrorMs",
+        stats.period.getCount() > 0 ? (stats.period.getMean() - 1.0 / frequency) * 1e3 : 0.0);
+    Logger.recordOutput("Odometry/Thread/JitterP50Ms", stats.jitter.getPercentile(0.5) * 1e3);
+    Logger.recordOutput("Odometry/Thread/JitterP90Ms", stats.jitter.getPercentile(0.9) * 1e3);
+    lastSampleCount = stats.sampleCount;
+    lastOverruns = stats.overruns;
+    lastTimeouts = stats.timeouts;
+    lastJitterP99 = stats.jitter.getPercentile(0.99);
+    Logger.recordOutput("Odometry/Thread/JitterP99Ms", lastJitterP99 * 1e3);
+    Logger.recordOutput("Odometry/Thread/JitterMaxMs", stats.jitter.getMax() * 1e3);
+    for (int i = 0; i < signalLatencyMeansMs.length && i < stats.latencySums.length; i++) {
+      signalLatencyMeansMs[i] =
+          stats.sampleCount > 0 ? stats.latencySums[i] / stats.sampleCount * 1e3 : 0.0;
+      signalLatencyMaxesMs[i] = stats.latencyMaxes[i] * 1e3;
+    }
+    Logger.recordOutput("Odometry/Thread/SignalLatencyMeanMs", signalLatencyMeansMs);
+    Logger.recordOutput("Odometry/Thread/SignalLatencyMaxMs", signalLatencyMaxesMs);
+    Logger.recordOutput("Odometry/Thread/FrequencyHz", frequency);
+    Logger.recordOutput("Odometry/Thread/Timeouts", totalTimeouts);
+    Logger.recordOutput("Odometry/Thread/DroppedSamples", totalDroppedSamples);
+    Logger.recordOutput("Odometry/Thread/DeadlineMisses", totalDeadlineMisses);
+    Logger.recordOutput("Odometry/Thread/ClockOffsetSecs", clockOffset);
+    Logger.recordOutput("Odometry/Thread/MainLockWaitMs", mainLockWaitNanos / 1e6);
+    Logger.recordOutput(
+        "Odometry/Thread/ThreadLockWaitMaxMs", threadLockWaitMaxNanos.getAndSet(0) / 1e6);
+
+    // Cleared here so the next swap hands the odometry thread an empty set
+    stats.reset();
+  }
+
+  /** Returns the 99th percentile sample jitter from the last {@link #logTelemetry()} in seconds. */
+  public double getJitterP99Secs() {
+    return lastJitterP99;
+  }
+
+  /** Returns the number of samples taken before the last {@link #logTelemetry()}. */
+  public int getLastSampleCount() {
+    return lastSampleCount;
+  }
+
+  /**
+   * Returns the number of samples before the last {@link #logTelemetry()} that arrived more than
+   * one and a half nominal periods after the previous sample.
+   */
+  public int getLastOverruns() {
+    return lastOverruns;
+  }
+
+  /** Returns the number of timed out reads before the last {@link #logTelemetry()}. */
+  public int getLastTimeouts() {
+    return lastTimeouts;
+  }
+
+  /** Returns the frequency at which signals are currently sampled in Hz. */
+  public double getFrequency() {
+    return frequency;
+  }
+
+  /**
+   * Requests a new sampling frequency. The odometry thread applies it to the update frequency of
+   * every registered Phoenix signal before its next sample.
+   */
+  public void setFrequency(double frequencyHz) {
+    requestedFrequency = frequencyHz;
+  }
+
+  /**
+   * Requests a new scheduling policy for the odometry thread. The policy is applied by the thread
+   * itself before its next sample, since priority and affinity can only be set from within it.
+   */
+  public void setSchedulingPolicy(ThreadSchedulingPolicy policy) {
+    requestedPolicy = policy;
+  }
+
+  /**
+   * Registers a Phoenix signal to be read from the thread. The signal is refreshed separately from
+   * all others on buses that are not CAN FD.
+   */
+  public DoubleRingBuffer registerSignal(StatusSignal<Angle> signal) {
+    return addPhoenixSignal(signal, signal);
+  }
+
+  /**
+   * Registers a Phoenix signal to be read from the thread. On buses that are not CAN FD, signals
+   * from the same device are refreshed together, separately from other devices.
+   *
+   * @param device the device that owns the signal
+   * @param signal the signal to read
+   */
+  public DoubleRingBuffer registerSignal(ParentDevice device, StatusSignal<Angle> signal) {
+    return addPhoenixSignal(signal, device);
+  }
+
+  private DoubleRingBuffer addPhoenixSignal(StatusSignal<Angle> signal, Object device) {
+    DoubleRingBuffer queue = new DoubleRingBuffer(QUEUE_CAPACITY);
     signalsLock.lock();
     Drive.odometryLock.lock();
     try {
@@ -69,7 +271,25 @@ public class PhoenixOdometryThread extends Thread {
       System.arraycopy(phoenixSignals, 0, newSignals, 0, phoenixSignals.length);
       newSignals[phoenixSignals.length] = signal;
       phoenixSignals = newSignals;
+      phoenixSignalDevices.add(device);
+      phoenixSignalGroupIndices = groupByDevice(phoenixSignalDevices);
+      phoenixSignalGroups = new BaseStatusSignal[phoenixSignalGroupIndices.length][];
+      for (int group = 0; group < phoenixSignalGroups.length; group++) {
+        int[] indices = phoenixSignalGroupIndices[group];
+        phoenixSignalGroups[group] = new BaseStatusSignal[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+          phoenixSignalGroups[group][i] = newSignals[indices[i]];
+        }
+      }
       phoenixQueues.add(queue);
+      phoenixTimestampQueues.add(null);
+      signalLatencies = new double[newSignals.length];
+      signalTimestamps = new double[newSignals.length];
+      signalRefreshTimes = new double[newSignals.length];
+      signalLatencyMeansMs = new double[newSignals.length];
+      signalLatencyMaxesMs = new double[newSignals.length];
+      activeStats.resizeSignals(newSignals.length);
+      publishedStats.resizeSignals(newSignals.length);
     } finally {
       signalsLock.unlock();
       Drive.odometryLock.unlock();
@@ -77,9 +297,31 @@ public class PhoenixOdometryThread extends Thread {
     return queue;
   }
 
+  /**
+   * Splits signals into one group per device, keeping the order of registration.
+   *
+   * @param devices the device of each signal, in registration order
+   * @return the indices of the signals in each group
+   */
+  private static int[][] groupByDevice(List<Object> devices) {
+    List<Object> uniqueDevices = new ArrayList<>();
+    for (Object device : devices) {
+      if (!uniqueDevices.contains(device)) {
+        uniqueDevices.add(device);
+      }
+    }
+    int[][] groups = new int[uniqueDevices.size()][];
+    for (int group = 0; group < groups.length; group++) {
+      Object device = uniqueDevices.get(group);
+      groups[group] =
+          IntStream.range(0, devices.size()).filter(i -> devices.get(i) == device).toArray();
+    }
+    return groups;
+  }
+
   /** Registers a generic signal to be read from the thread. */
-  public Queue<Double> registerSignal(DoubleSupplier signal) {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
+  public DoubleRingBuffer registerSignal(DoubleSupplier signal) {
+    DoubleRingBuffer queue = new DoubleRingBuffer(QUEUE_CAPACITY);
     signalsLock.lock();
     Drive.odometryLock.lock();
     try {
@@ -92,9 +334,33 @@ public class PhoenixOdometryThread extends Thread {
     return queue;
   }
 
+  /**
+   * Returns a new queue that returns the hardware timestamp of each sample of a registered Phoenix
+   * signal, converted to the FPGA timebase. Unlike {@link #makeTimestampQueue()}, these timestamps
+   * reflect when that specific signal was measured rather than an average across all signals.
+   *
+   * @param signalQueue the queue returned when registering the Phoenix signal
+   */
+  public DoubleRingBuffer makeTimestampQueue(DoubleRingBuffer signalQueue) {
+    DoubleRingBuffer queue = new DoubleRingBuffer(QUEUE_CAPACITY);
+    signalsLock.lock();
+    Drive.odometryLock.lock();
+    try {
+      int index = phoenixQueues.indexOf(signalQueue);
+      if (index < 0) {
+        throw new IllegalArgumentException("Queue does not belong to a registered Phoenix signal");
+      }
+      phoenixTimestampQueues.set(index, queue);
+    } finally {
+      signalsLock.unlock();
+      Drive.odometryLock.unlock();
+    }
+    return queue;
+  }
+
   /** Returns a new queue that returns timestamp values for each sample. */
-  public Queue<Double> makeTimestampQueue() {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
+  public DoubleRingBuffer makeTimestampQueue() {
+    DoubleRingBuffer queue = new DoubleRingBuffer(QUEUE_CAPACITY);
     Drive.odometryLock.lock();
     try {
       timestampQueues.add(queue);
@@ -106,53 +372,220 @@ public class PhoenixOdometryThread extends Thread {
 
   @Override
   public void run() {
-    while (true) {
-      // Wait for updates from all signals
-      signalsLock.lock();
-      try {
-        if (isCANFD && phoenixSignals.length > 0) {
-          BaseStatusSignal.waitForAll(2.0 / Drive.ODOMETRY_FREQUENCY, phoenixSignals);
-        } else {
-          // "waitForAll" does not support blocking on multiple signals with a bus
-          // that is not CAN FD, regardless of Pro licensing. No reasoning for this
-          // behavior is provided by the documentation.
-          Thread.sleep((long) (1000.0 / Drive.ODOMETRY_FREQUENCY));
-          if (phoenixSignals.length > 0) BaseStatusSignal.refreshAll(phoenixSignals);
+    double lastSampleTime = 0.0;
+    long nextDeadline = System.nanoTime();
+    while (!isInterrupted()) {
+      // Apply a new scheduling policy if requested
+      ThreadSchedulingPolicy policy = requestedPolicy;
+      if (policy != null && policy != appliedPolicy) {
+        policy.apply();
+        appliedPolicy = policy;
+      }
+
+      // Apply a new sampling frequency if requested
+      double sampleFrequency = requestedFrequency;
+      if (sampleFrequency != frequency) {
+        signalsLock.lock();
+        try {
+          if (phoenixSignals.length > 0) {
+            BaseStatusSignal.setUpdateFrequencyForAll(sampleFrequency, phoenixSignals);
+          }
+        } finally {
+          signalsLock.unlock();
         }
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-      } finally {
-        signalsLock.unlock();
+        frequency = sampleFrequency;
       }
 
-      // Save new data to queues
-      Drive.odometryLock.lock();
-      try {
-        // Sample timestamp is current FPGA time minus average CAN latency
-        // Default timestamps from Phoenix are NOT compatible with
-        // FPGA timestamps, this solution is imperfect but close
-        double timestamp = RobotController.getFPGATime() / 1e6;
-        double totalLatency = 0.0;
-        for (BaseStatusSignal signal : phoenixSignals) {
-          totalLatency += signal.getTimestamp().getLatency();
+      // Wait for updates from all signals
+      boolean timedOut = false;
+      boolean missedDeadline = false;
+      double[] refreshTimes = signalRefreshTimes;
+      if (isCANFD && phoenixSignals.length > 0) {
+        signalsLock.lock();
+        try {
+          timedOut = !BaseStatusSignal.waitForAll(2.0 / sampleFrequency, phoenixSignals).isOK();
+        } finally {
+          signalsLock.unlock();
         }
-        if (phoenixSignals.length > 0) {
-          timestamp -= totalLatency / phoenixSignals.length;
+        Arrays.fill(refreshTimes, RobotController.getFPGATime() / 1e6);
+      } else {
+        // "waitForAll" does not support blocking on multiple signals with a bus
+        // that is not CAN FD, regardless of Pro licensing. No reasoning for this
+        // behavior is provided by the documentation. Instead, wait for an absolute
+        // deadline so time spent refreshing does not stretch the period.
+        long periodNanos = (long) (1e9 / sampleFrequency);
+        nextDeadline += periodNanos;
+        long now = System.nanoTime();
+        if (now - nextDeadline > periodNanos) {
+          // More than a full period behind, skip the missed samples rather than bursting
+          missedDeadline = true;
+          nextDeadline = now;
+        }
+        long remaining;
+        while ((remaining = nextDeadline - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(remaining);
+          if (isInterrupted()) {
+            // parkNanos returns immediately while interrupted, so stop instead of spinning
+            return;
+          }
         }
 
+        // Refresh one device at a time, only holding the lock for each refresh, and stamp each
+        // device when its own refresh returns
+        BaseStatusSignal[][] groups;
+        int[][] groupIndices;
+        signalsLock.lock();
+        try {
+          groups = phoenixSignalGroups;
+          groupIndices = phoenixSignalGroupIndices;
+          refreshTimes = signalRefreshTimes;
+        } finally {
+          signalsLock.unlock();
+        }
+        for (int group = 0; group < groups.length; group++) {
+          signalsLock.lock();
+          try {
+            timedOut |= !BaseStatusSignal.refreshAll(groups[group]).isOK();
+          } finally {
+            signalsLock.unlock();
+          }
+          double refreshTime = RobotController.getFPGATime() / 1e6;
+          for (int index : groupIndices[group]) {
+            refreshTimes[index] = refreshTime;
+          }
+        }
+      }
+
+      // Sample timestamp is the refresh time of each signal minus its CAN latency, averaged
+      // Default timestamps from Phoenix are NOT compatible with
+      // FPGA timestamps, this solution is imperfect but close
+      BaseStatusSignal[] sampledSignals = phoenixSignals;
+      double[] latencies = signalLatencies;
+      double[] signalTimestamps = this.signalTimestamps;
+      double sampleTime = RobotController.getFPGATime() / 1e6;
+      updateClockOffset();
+      double totalReceiveTime = 0.0;
+      int signalCount =
+          Math.min(sampledSignals.length, Math.min(latencies.length, signalTimestamps.length));
+      for (int i = 0; i < signalCount; i++) {
+        var signalTimestamp = sampledSignals[i].getTimestamp();
+        latencies[i] = signalTimestamp.getLatency();
+        double receiveTime =
+            (i < refreshTimes.length ? refreshTimes[i] : sampleTime) - latencies[i];
+        totalReceiveTime += receiveTime;
+
+        // Each signal keeps its own measurement time, converted to the FPGA timebase
+        signalTimestamps[i] =
+            signalTimestamp.isValid() && !Double.isNaN(clockOffset)
+                ? signalTimestamp.getTime() + clockOffset
+                : receiveTime;
+      }
+      double timestamp = signalCount > 0 ? totalReceiveTime / signalCount : sampleTime;
+      double period = lastSampleTime > 0.0 ? sampleTime - lastSampleTime : 0.0;
+      lastSampleTime = sampleTime;
+
+      // Save new data to queues, the main thread only holds this lock to snapshot the queues
+      long waitStart = System.nanoTime();
+      Drive.odometryLock.lock();
+      threadLockWaitMaxNanos.accumulateAndGet(System.nanoTime() - waitStart, Math::max);
+      try {
         // Add new samples to queues
-        for (int i = 0; i < phoenixSignals.length; i++) {
-          phoenixQueues.get(i).offer(phoenixSignals[i].getValueAsDouble());
+        boolean dropped = false;
+        for (int i = 0; i < sampledSignals.length; i++) {
+          dropped |= !phoenixQueues.get(i).offer(sampledSignals[i].getValueAsDouble());
+          DoubleRingBuffer timestampQueue = phoenixTimestampQueues.get(i);
+          if (timestampQueue != null && i < signalCount) {
+            dropped |= !timestampQueue.offer(signalTimestamps[i]);
+          }
         }
         for (int i = 0; i < genericSignals.size(); i++) {
-          genericQueues.get(i).offer(genericSignals.get(i).getAsDouble());
+          dropped |= !genericQueues.get(i).offer(genericSignals.get(i).getAsDouble());
         }
         for (int i = 0; i < timestampQueues.size(); i++) {
-          timestampQueues.get(i).offer(timestamp);
+          dropped |= !timestampQueues.get(i).offer(timestamp);
         }
+
+        // Record statistics for this sample
+        activeStats.record(
+            period, 1.0 / sampleFrequency, latencies, timedOut, dropped, missedDeadline);
       } finally {
         Drive.odometryLock.unlock();
       }
     }
   }
+
+  /**
+   * Updates the estimated offset between the FPGA clock and the Phoenix clock used for signal
+   * timestamps. Readings that were interrupted between the two clock reads are discarded, and the
+   * rest are low-pass filtered.
+   */
+  private void updateClockOffset() {
+    double phoenixTimeBefore = Utils.getCurrentTimeSeconds();
+    double fpgaTime = RobotController.getFPGATime() / 1e6;
+    double phoenixTimeAfter = Utils.getCurrentTimeSeconds();
+    if (phoenixTimeAfter - phoenixTimeBefore > CLOCK_OFFSET_MAX_READ_TIME) {
+      return;
+    }
+    double measuredOffset = fpgaTime - (phoenixTimeBefore + phoenixTimeAfter) / 2.0;
+    clockOffset =
+        Double.isNaN(clockOffset)
+            ? measuredOffset
+            : clockOffset + CLOCK_OFFSET_FILTER_GAIN * (measuredOffset - clockOffset);
+  }
+
+  /** Statistics for the samples taken during one main loop cycle. */
+  private static class SampleStats {
+    private static final double OVERRUN_THRESHOLD = 1.5; // Multiple of the nominal period
+
+    final FixedHistogram period = new FixedHistogram(0.00005, 600); // 50 us bins up to 30 ms
+    final FixedHistogram jitter = new FixedHistogram(0.000025, 400); // 25 us bins up to 10 ms
+    double[] latencySums = new double[0];
+    double[] latencyMaxes = new double[0];
+    int sampleCount = 0;
+    int timeouts = 0;
+    int droppedSamples = 0;
+    int overruns = 0;
+    int deadlineMisses = 0;
+
+    void record(
+        double samplePeriod,
+        double nominalPeriod,
+        double[] latencies,
+        boolean timedOut,
+        boolean dropped,
+        boolean missedDeadline) {
+      sampleCount++;
+      if (samplePeriod > 0.0) {
+        period.record(samplePeriod);
+        jitter.record(Math.abs(samplePeriod - nominalPeriod));
+        if (samplePeriod > nominalPeriod * OVERRUN_THRESHOLD) overruns++;
+      }
+      for (int i = 0; i < latencies.length && i < latencySums.length; i++) {
+        latencySums[i] += latencies[i];
+        latencyMaxes[i] = Math.max(latencyMaxes[i], latencies[i]);
+      }
+      if (timedOut) timeouts++;
+      if (dropped) droppedSamples++;
+      if (missedDeadline) deadlineMisses++;
+    }
+
+    void resizeSignals(int signalCount) {
+      latencySums = new double[signalCount];
+      latencyMaxes = new double[signalCount];
+    }
+
+    void reset() {
+      period.reset();
+      jitter.reset();
+      for (int i = 0; i < latencySums.length; i++) {
+        latencySums[i] = 0.0;
+        latencyMaxes[i] = 0.0;
+      }
+      sampleCount = 0;
+      timeouts = 0;
+      droppedSamples = 0;
+      overruns = 0;
+      deadlineMisses = 0;
+    }
+  }
 }
@@ -0,0 +1,50 @@
+package frc.robot.subsystems.drive;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+
+/**
+ * Refreshes the non-odometry status signals of every drive IO implementation with a single call per
+ * loop. IO implementations register their signals once when constructed, then only read the cached
+ * values in updateInputs. Odometry signals are read by {@link PhoenixOdometryThread} instead.
+ */
+public class PhoenixSignalBatch {
+  private BaseStatusSignal[] signals = new BaseStatusSignal[0];
+  private long lastRefreshNanos = 0;
+
+  private static PhoenixSignalBatch instance = null;
+
+  public static PhoenixSignalBatch getInstance() {
+    if (instance == null) {
+      instance = new PhoenixSignalBatch();
+    }
+    return instance;
+  }
+
+  private PhoenixSignalBatch() {}
+
+  /** Adds signals to be refreshed every loop. */
+  public void register(BaseStatusSignal... newSignals) {
+    BaseStatusSignal[] combined = new BaseStatusSignal[signals.length + newSignals.length];
+    System.arraycopy(signals, 0, combined, 0, signals.length);
+    System.arraycopy(newSignals, 0, combined, signals.length, newSignals.length);
+    signals = combined;
+  }
+
+  /**
+   * Refreshes every registered signal. Call once per loop, before the IO implementations update
+   * their inputs. The status of each signal is kept, so callers can check individual groups with
+   * {@link BaseStatusSignal#isAllGood(BaseStatusSignal...)}.
+   */
+  public void refresh() {
+    long start = System.nanoTime();
+    if (signals.length > 0) {
+      BaseStatusSignal.refreshAll(signals);
+    }
+    lastRefreshNanos = System.nanoTime() - start;
+  }
+
+  /** Returns the time taken by the last {@link #refresh()} in milliseconds. */
+  public double getLastRefreshMs() {
+    return lastRefreshNanos / 1e6;
+  }
+}
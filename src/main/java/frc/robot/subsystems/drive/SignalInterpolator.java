@@ -0,0 +1,78 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Resamples one timestamped odometry signal onto another timeline using linear interpolation.
+ * Samples are provided one batch per cycle, and the last sample of each batch is remembered so
+ * query times at the start of the next batch can still be bracketed. Does not allocate.
+ */
+class SignalInterpolator {
+  private final boolean angular;
+  private double[] times = new double[0];
+  private double[] values = new double[0];
+  private int count = 0;
+  private int cursor = 0;
+  private double lastTime = Double.NaN;
+  private double lastValue = 0.0;
+
+  /**
+   * Creates a new interpolator.
+   *
+   * @param angular whether values are angles in radians, which are interpolated along the shortest
+   *     path so wrapped signals are handled correctly
+   */
+  SignalInterpolator(boolean angular) {
+    this.angular = angular;
+  }
+
+  /**
+   * Starts a new batch of samples. The arrays are not copied and must not change until {@link
+   * #end()} is called.
+   *
+   * @param times sample timestamps in seconds, sorted from oldest to newest
+   * @param values sample values
+   * @param count the number of valid samples in both arrays
+   */
+  void begin(double[] times, double[] values, int count) {
+    this.times = times;
+    this.values = values;
+    this.count = count;
+    cursor = 0;
+  }
+
+  /**
+   * Returns the value of the signal at the requested time. Times before the previous batch or after
+   * the newest sample return the closest known sample. Query times must not decrease within a
+   * batch.
+   */
+  double valueAt(double time) {
+    while (cursor < count && times[cursor] < time) {
+      cursor++;
+    }
+
+    double previousTime = cursor > 0 ? times[cursor - 1] : lastTime;
+    double previousValue = cursor > 0 ? values[cursor - 1] : lastValue;
+    if (cursor >= count) {
+      return previousValue;
+    }
+
+    double nextTime = times[cursor];
+    double nextValue = values[cursor];
+    if (Double.isNaN(previousTime) || time >= nextTime || nextTime <= previousTime) {
+      return nextValue;
+    }
+    double t = (time - previousTime) / (nextTime - previousTime);
+    double delta =
+        angular ? MathUtil.angleModulus(nextValue - previousValue) : nextValue - previousValue;
+    return previousValue + delta * t;
+  }
+
+  /** Finishes the current batch, keeping its newest sample for the next one. */
+  void end() {
+    if (count > 0) {
+      lastTime = times[count - 1];
+      lastValue = values[count - 1];
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package frc.robot.util;
+
+/**
+ * Fixed-capacity ring buffer of primitive doubles for handing samples from one producer thread to
+ * one consumer thread without locking or boxing.
+ *
+ * <p>Only a single thread may call {@link #offer(double)} and only a single (possibly different)
+ * thread may call {@link #drainTo(double[])} or {@link #clear()}. The producer publishes each value
+ * with a volatile write of the tail index, so the consumer always observes fully written samples.
+ *
+ * <p>When several buffers are filled together, the consumer can call {@link #snapshot()} on each of
+ * them while holding a lock shared with the producer, then drain with {@link
+ * #drainSnapshotTo(double[])} outside of the lock to read the same set of samples from every
+ * buffer.
+ */
+public class DoubleRingBuffer {
+  private final double[] buffer;
+
+  // Index of the next sample to read, only written by the consumer
+  private volatile long head = 0;
+  // Index of the next sample to write, only written by the producer
+  private volatile long tail = 0;
+  // Tail captured by the last snapshot, only used by the consumer
+  private long snapshotTail = 0;
+
+  /**
+   * Creates a new ring buffer.
+   *
+   * @param capacity the maximum number of samples held before new samples are rejected
+   */
+  public DoubleRingBuffer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Ring buffer capacity must be positive");
+    }
+    buffer = new double[capacity];
+  }
+
+  /**
+   * Adds a sample to the buffer. Must only be called from the producer thread.
+   *
+   * @param value the sample to add
+   * @return false if the buffer is full and the sample was dropped
+   */
+  public boolean offer(double value) {
+    long currentTail = tail;
+    if (currentTail - head >= buffer.length) {
+      return false;
+    }
+    buffer[(int) (currentTail % buffer.length)] = value;
+    tail = currentTail + 1;
+    return true;
+  }
+
+  /**
+   * Moves all available samples (oldest first) into the destination array. Must only be called from
+   * the consumer thread.
+   *
+   * @param destination the array to fill, starting at index zero
+   * @return the number of samples copied, never more than the destination length
+   */
+  public int drainTo(double[] destination) {
+    return drainUntil(tail, destination);
+  }
+
+  /**
+   * Captures the samples published so far so they can be read later by {@link
+   * #drainSnapshotTo(double[])}. Must only be called from the consumer thread.
+   */
+  public void snapshot() {
+    snapshotTail = tail;
+  }
+
+  /**
+   * Moves the samples captured by the last {@link #snapshot()} (oldest first) into the destination
+   * array. Samples published after the snapshot are left in the buffer. Must only be called from
+   * the consumer thread.
+   *
+   * @param destination the array to fill, starting at index zero
+   * @return the number of samples copied, never more than the destination length
+   */
+  public int drainSnapshotTo(double[] destination) {
+    return drainUntil(snapshotTail, destination);
+  }
+
+  private int drainUntil(long end, double[] destination) {
+    long currentHead = head;
+    int count = (int) Math.max(0, Math.min(end - currentHead, destination.length));
+    for (int i = 0; i < count; i++) {
+      destination[i] = buffer[(int) ((currentHead + i) % buffer.length)];
+    }
+    head = currentHead + count;
+    return count;
+  }
+
+  /** Discards all available samples. Must only be called from the consumer thread. */
+  public void clear() {
+    head = tail;
+  }
+
+  /** Returns the number of samples currently available to the consumer. */
+  public int size() {
+    return (int) (tail - head);
+  }
+
+  /** Returns the maximum number of samples the buffer can hold. */
+  public int capacity() {
+    return buffer.length;
+  }
+}
@@ -0,0 +1,92 @@
+package frc.robot.util;
+
+/**
+ * Histogram with a fixed number of equal-width bins starting at zero. Recording a value and
+ * computing percentiles never allocate, so it is safe to use from high-frequency loops. Values past
+ * the last bin are counted in the last bin, while the exact maximum is always tracked.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public class FixedHistogram {
+  private final double binWidth;
+  private final long[] bins;
+  private long count = 0;
+  private double sum = 0.0;
+  private double max = 0.0;
+
+  /**
+   * Creates a new histogram covering the range [0, binWidth * binCount).
+   *
+   * @param binWidth the width of each bin
+   * @param binCount the number of bins
+   */
+  public FixedHistogram(double binWidth, int binCount) {
+    if (binWidth <= 0.0 || binCount <= 0) {
+      throw new IllegalArgumentException("Histogram bin width and count must be positive");
+    }
+    this.binWidth = binWidth;
+    bins = new long[binCount];
+  }
+
+  /** Adds a value to the histogram. Negative values are counted in the first bin. */
+  public void record(double value) {
+    int bin = (int) (value / binWidth);
+    if (bin < 0) {
+      bin = 0;
+    } else if (bin >= bins.length) {
+      bin = bins.length - 1;
+    }
+    bins[bin]++;
+    if (count == 0 || value > max) {
+      max = value;
+    }
+    count++;
+    sum += value;
+  }
+
+  /**
+   * Returns an upper bound for the requested percentile, accurate to one bin width.
+   *
+   * @param percentile the percentile to compute, from 0.0 to 1.0
+   * @return the upper edge of the bin containing the percentile, or 0.0 if nothing was recorded
+   */
+  public double getPercentile(double percentile) {
+    if (count == 0) {
+      return 0.0;
+    }
+    long target = (long) Math.ceil(percentile * count);
+    long cumulative = 0;
+    for (int i = 0; i < bins.length; i++) {
+      cumulative += bins[i];
+      if (cumulative >= target && cumulative > 0) {
+        return Math.min((i + 1) * binWidth, max);
+      }
+    }
+    return max;
+  }
+
+  /** Returns the number of recorded values. */
+  public long getCount() {
+    return count;
+  }
+
+  /** Returns the mean of the recorded values, or 0.0 if nothing was recorded. */
+  public double getMean() {
+    return count == 0 ? 0.0 : sum / count;
+  }
+
+  /** Returns the largest recorded value, or 0.0 if nothing was recorded. */
+  public double getMax() {
+    return max;
+  }
+
+  /** Removes all recorded values. */
+  public void reset() {
+    for (int i = 0; i < bins.length; i++) {
+      bins[i] = 0;
+    }
+    count = 0;
+    sum = 0.0;
+    max = 0.0;
+  }
+}
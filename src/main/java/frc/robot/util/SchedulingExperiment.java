@@ -0,0 +1,142 @@
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.TimedRobot;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Owns the scheduling policies of the main loop and the odometry thread. When A/B mode is enabled,
+ * alternates between two configurations at a fixed interval and logs loop overruns and odometry
+ * jitter separately for each one, so settings can be chosen from data.
+ */
+public class SchedulingExperiment {
+  // A loop is counted as an overrun when it arrives this much later than the nominal period
+  private static final double OVERRUN_THRESHOLD = 1.5 * TimedRobot.kDefaultPeriod;
+
+  /** A named pair of scheduling policies for the main loop and odometry thread. */
+  public static class Configuration {
+    public final String name;
+    public final ThreadSchedulingPolicy mainLoop;
+    public final ThreadSchedulingPolicy odometry;
+
+    // Measurements while this configuration is active
+    private long loops = 0;
+    private long overruns = 0;
+    private double jitterP99Sum = 0.0;
+    private double jitterMax = 0.0;
+    private final String loopsKey;
+    private final String overrunsKey;
+    private final String overrunRateKey;
+    private final String jitterP99MeanKey;
+    private final String jitterMaxKey;
+
+    public Configuration(
+        String name, ThreadSchedulingPolicy mainLoop, ThreadSchedulingPolicy odometry) {
+      this.name = name;
+      this.mainLoop = mainLoop;
+      this.odometry = odometry;
+      loopsKey = "Scheduling/" + name + "/Loops";
+      overrunsKey = "Scheduling/" + name + "/LoopOverruns";
+      overrunRateKey = "Scheduling/" + name + "/LoopOverrunRate";
+      jitterP99MeanKey = "Scheduling/" + name + "/OdometryJitterP99MeanMs";
+      jitterMaxKey = "Scheduling/" + name + "/OdometryJitterP99MaxMs";
+    }
+
+    private void log() {
+      Logger.recordOutput(loopsKey, loops);
+      Logger.recordOutput(overrunsKey, overruns);
+      Logger.recordOutput(overrunRateKey, loops > 0 ? (double) overruns / loops : 0.0);
+      Logger.recordOutput(jitterP99MeanKey, loops > 0 ? jitterP99Sum / loops * 1e3 : 0.0);
+      Logger.recordOutput(jitterMaxKey, jitterMax * 1e3);
+    }
+  }
+
+  private final Configuration configA;
+  private final Configuration configB;
+  private final boolean abTestEnabled;
+  private final double switchPeriodSecs;
+  private final Consumer<ThreadSchedulingPolicy> odometryPolicyConsumer;
+  private final DoubleSupplier odometryJitterSupplier;
+
+  private Configuration active;
+  private boolean mainAffinityDirty = true;
+  private double lastLoopTimestamp = 0.0;
+  private double lastSwitchTimestamp = 0.0;
+
+  /**
+   * Creates a new scheduling experiment.
+   *
+   * @param configA the configuration used normally, and first during an A/B test
+   * @param configB the alternate configuration, only used during an A/B test
+   * @param abTestEnabled whether to alternate between the two configurations
+   * @param switchPeriodSecs how long to run each configuration before switching
+   * @param odometryPolicyConsumer applies a policy to the odometry thread
+   * @param odometryJitterSupplier returns the odometry jitter p99 for the last loop in seconds
+   */
+  public SchedulingExperiment(
+      Configuration configA,
+      Configuration configB,
+      boolean abTestEnabled,
+      double switchPeriodSecs,
+      Consumer<ThreadSchedulingPolicy> odometryPolicyConsumer,
+      DoubleSupplier odometryJitterSupplier) {
+    this.configA = configA;
+    this.configB = configB;
+    this.abTestEnabled = abTestEnabled;
+    this.switchPeriodSecs = switchPeriodSecs;
+    this.odometryPolicyConsumer = odometryPolicyConsumer;
+    this.odometryJitterSupplier = odometryJitterSupplier;
+    lastSwitchTimestamp = RobotController.getFPGATime() / 1e6;
+    activate(configA);
+  }
+
+  /** Returns the policy the main loop should use for the current cycle. */
+  public ThreadSchedulingPolicy getMainLoopPolicy() {
+    return active.mainLoop;
+  }
+
+  /** Records measurements and switches configurations if needed. Call at the end of each loop. */
+  public void periodic() {
+    double now = RobotController.getFPGATime() / 1e6;
+
+    // Record measurements for the active configuration
+    if (lastLoopTimestamp > 0.0) {
+      double jitterP99 = odometryJitterSupplier.getAsDouble();
+      active.loops++;
+      if (now - lastLoopTimestamp > OVERRUN_THRESHOLD) {
+        active.overruns++;
+      }
+      active.jitterP99Sum += jitterP99;
+      active.jitterMax = Math.max(active.jitterMax, jitterP99);
+    }
+
+    // Switch configurations
+    if (abTestEnabled && now - lastSwitchTimestamp >= switchPeriodSecs) {
+      activate(active == configA ? configB : configA);
+      lastSwitchTimestamp = now;
+    }
+
+    Logger.recordOutput("Scheduling/ActiveConfiguration", active.name);
+    configA.log();
+    if (abTestEnabled) {
+      configB.log();
+    }
+
+    // Affinity is applied from the main thread itself, and only when it changes. Starting the
+    // taskset process is slow, so the next loop is measured from after it finishes.
+    if (mainAffinityDirty) {
+      active.mainLoop.applyAffinity();
+      mainAffinityDirty = false;
+      now = RobotController.getFPGATime() / 1e6;
+    }
+    lastLoopTimestamp = now;
+  }
+
+  private void activate(Configuration configuration) {
+    active = configuration;
+    mainAffinityDirty = true;
+    odometryPolicyConsumer.accept(configuration.odometry);
+  }
+}
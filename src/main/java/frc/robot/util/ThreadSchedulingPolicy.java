@@ -0,0 +1,128 @@
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.Threads;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Scheduling settings for a single thread: real-time (SCHED_FIFO) priority and an optional CPU core
+ * to pin the thread to. Policies are only applied when running on a real robot, so simulation and
+ * replay on a development machine are never affected.
+ */
+public class ThreadSchedulingPolicy {
+  /** CPU value used when the thread may run on any core. */
+  public static final int ANY_CPU = -1;
+
+  // Computed before anything is pinned, since pinning changes availableProcessors()
+  private static final String ALL_CPUS = "0-" + (Runtime.getRuntime().availableProcessors() - 1);
+  private static final int NON_REAL_TIME_PRIORITY = 10; // Ignored by the HAL for non-RT threads
+
+  private final boolean realTime;
+  private final int priority;
+  private final int cpu;
+
+  private ThreadSchedulingPolicy(boolean realTime, int priority, int cpu) {
+    this.realTime = realTime;
+    this.priority = priority;
+    this.cpu = cpu;
+  }
+
+  /** Returns a policy using the default (non-real-time) scheduler on any core. */
+  public static ThreadSchedulingPolicy normal() {
+    return new ThreadSchedulingPolicy(false, NON_REAL_TIME_PRIORITY, ANY_CPU);
+  }
+
+  /**
+   * Returns a real-time policy on any core.
+   *
+   * @param priority the real-time priority, from 1 (lowest) to 99 (highest)
+   */
+  public static ThreadSchedulingPolicy realTime(int priority) {
+    if (priority < 1 || priority > 99) {
+      throw new IllegalArgumentException("Real-time priority must be between 1 and 99");
+    }
+    return new ThreadSchedulingPolicy(true, priority, ANY_CPU);
+  }
+
+  /**
+   * Returns a copy of this policy pinned to a single CPU core.
+   *
+   * @param cpu the core index, or {@link #ANY_CPU} to allow every core
+   */
+  public ThreadSchedulingPolicy withCpu(int cpu) {
+    return new ThreadSchedulingPolicy(realTime, priority, cpu);
+  }
+
+  public boolean isRealTime() {
+    return realTime;
+  }
+
+  public int getPriority() {
+    return priority;
+  }
+
+  public int getCpu() {
+    return cpu;
+  }
+
+  /**
+   * Applies the priority and CPU affinity to the calling thread.
+   *
+   * @return whether both settings were applied successfully
+   */
+  public boolean apply() {
+    boolean priorityApplied = applyPriority();
+    boolean affinityApplied = applyAffinity();
+    return priorityApplied && affinityApplied;
+  }
+
+  /**
+   * Applies only the priority to the calling thread. This is cheap enough to call every loop.
+   *
+   * @return whether the priority was applied successfully
+   */
+  public boolean applyPriority() {
+    if (!RobotBase.isReal()) {
+      return false;
+    }
+    return Threads.setCurrentThreadPriority(realTime, priority);
+  }
+
+  /**
+   * Applies only the CPU affinity to the calling thread. This starts a "taskset" process, so it
+   * should only be called when the policy changes.
+   *
+   * @return whether the affinity was applied successfully
+   */
+  public boolean applyAffinity() {
+    if (!RobotBase.isReal()) {
+      return false;
+    }
+    try {
+      // "/proc/thread-self" links to "/proc/<pid>/task/<tid>" for the calling thread
+      String threadPath = Files.readSymbolicLink(Path.of("/proc/thread-self")).toString();
+      String threadId = threadPath.substring(threadPath.lastIndexOf('/') + 1);
+      String cpuList = cpu == ANY_CPU ? ALL_CPUS : Integer.toString(cpu);
+      Process process =
+          new ProcessBuilder("taskset", "-p", "-c", cpuList, threadId)
+              .redirectErrorStream(true)
+              .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+              .start();
+      return process.waitFor() == 0;
+    } catch (IOException e) {
+      DriverStation.reportWarning("Failed to set thread affinity: " + e.getMessage(), false);
+      return false;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return (realTime ? "RT " + priority : "Normal") + (cpu == ANY_CPU ? "" : " on CPU " + cpu);
+  }
+}
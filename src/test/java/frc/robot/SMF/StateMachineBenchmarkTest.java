@@ -0,0 +1,117 @@
+package frc.robot.SMF;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Times the flag and state command paths of a robot's worth of state machines, each cycle setting
+ * and clearing a flag and requesting a new state on every machine before running the scheduler.
+ */
+class StateMachineBenchmarkTest {
+  private static final int MACHINE_COUNT = 12;
+  private static final int WARMUP_CYCLES = 5000;
+  private static final int CYCLES = 20000;
+
+  /// Loose bound so the test only fails on a large regression, not on a slow computer
+  private static final double MAX_MICROS_PER_MACHINE_CYCLE = 20.0;
+
+  enum State {
+    UNDETERMINED,
+    IDLE,
+    INTAKING,
+    HOLDING,
+    AIMING,
+    SHOOTING,
+    EJECTING,
+    CLIMBING,
+    READY,
+    FAULT
+  }
+
+  private static final State[] TARGETS = {
+    State.IDLE, State.INTAKING, State.HOLDING, State.AIMING, State.SHOOTING, State.EJECTING
+  };
+
+  private static class BenchmarkMachine extends StateMachine<State> {
+    private int stateCommandRuns = 0;
+
+    BenchmarkMachine(int index) {
+      super("Benchmark" + index, State.UNDETERMINED, State.class);
+      for (State state : TARGETS) {
+        addOmniTransition(state);
+        registerStateCommand(state, () -> stateCommandRuns++);
+      }
+    }
+
+    @Override
+    protected void determineSelf() {
+      setState(State.IDLE);
+    }
+  }
+
+  @BeforeAll
+  static void setup() {
+    assertTrue(HAL.initialize(500, 0));
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+    DriverStation.refreshData();
+  }
+
+  @AfterAll
+  static void cleanup() {
+    CommandScheduler.getInstance().cancelAll();
+    CommandScheduler.getInstance().unregisterAllSubsystems();
+  }
+
+  @Test
+  void flagAndStateCommandLoop() {
+    BenchmarkMachine[] machines = new BenchmarkMachine[MACHINE_COUNT];
+    for (int i = 0; i < MACHINE_COUNT; i++) {
+      machines[i] = new BenchmarkMachine(i);
+      machines[i].enable();
+    }
+
+    runCycles(machines, WARMUP_CYCLES);
+    long start = System.nanoTime();
+    int flagHits = runCycles(machines, CYCLES);
+    long elapsed = System.nanoTime() - start;
+
+    double microsPerMachineCycle = elapsed / 1e3 / CYCLES / MACHINE_COUNT;
+
+    assertEquals(CYCLES * MACHINE_COUNT, flagHits);
+    for (BenchmarkMachine machine : machines) {
+      assertFalse(machine.isFlag(State.READY));
+      assertTrue(machine.stateCommandRuns > 0, "State commands did not run");
+    }
+    assertTrue(
+        microsPerMachineCycle < MAX_MICROS_PER_MACHINE_CYCLE,
+        "Took " + microsPerMachineCycle + " us per machine cycle");
+  }
+
+  /**
+   * @return the number of times a flag was seen set, so the flag reads are not optimized away
+   */
+  private static int runCycles(BenchmarkMachine[] machines, int cycles) {
+    int flagHits = 0;
+    for (int cycle = 0; cycle < cycles; cycle++) {
+      for (int i = 0; i < machines.length; i++) {
+        BenchmarkMachine machine = machines[i];
+        machine.setFlag(State.READY);
+        if (machine.isFlag(State.READY)) flagHits++;
+        machine.clearFlag(State.READY);
+        machine.requestTransition(TARGETS[(cycle + i) % TARGETS.length]);
+      }
+      CommandScheduler.getInstance().run();
+    }
+    return flagHits;
+  }
+}
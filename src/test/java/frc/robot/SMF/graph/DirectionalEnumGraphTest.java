@@ -0,0 +1,171 @@
+package frc.robot.SMF.graph;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import frc.robot.SMF.transitions.TransitionBase;
+import org.junit.jupiter.api.Test;
+
+class DirectionalEnumGraphTest {
+  enum Small {
+    A,
+    B,
+    C,
+    D
+  }
+
+  // More states than fit in a mask, so the graph spans several longs per row
+  enum Large {
+    S00,
+    S01,
+    S02,
+    S03,
+    S04,
+    S05,
+    S06,
+    S07,
+    S08,
+    S09,
+    S10,
+    S11,
+    S12,
+    S13,
+    S14,
+    S15,
+    S16,
+    S17,
+    S18,
+    S19,
+    S20,
+    S21,
+    S22,
+    S23,
+    S24,
+    S25,
+    S26,
+    S27,
+    S28,
+    S29,
+    S30,
+    S31,
+    S32,
+    S33,
+    S34,
+    S35,
+    S36,
+    S37,
+    S38,
+    S39,
+    S40,
+    S41,
+    S42,
+    S43,
+    S44,
+    S45,
+    S46,
+    S47,
+    S48,
+    S49,
+    S50,
+    S51,
+    S52,
+    S53,
+    S54,
+    S55,
+    S56,
+    S57,
+    S58,
+    S59,
+    S60,
+    S61,
+    S62,
+    S63,
+    S64,
+    S65,
+    S66,
+    S67,
+    S68,
+    S69
+  }
+
+  private static class Edge<E extends Enum<E>> extends TransitionBase<E> {
+    Edge(E start, E end) {
+      super(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return getName();
+    }
+
+    @Override
+    public void execute() {}
+
+    @Override
+    public void cancel() {}
+
+    @Override
+    public boolean isFinished() {
+      return true;
+    }
+
+    @Override
+    public boolean hasStarted() {
+      return true;
+    }
+  }
+
+  @Test
+  void routesFollowShortestPath() {
+    DirectionalEnumGraph<Small, Edge<Small>> graph = new DirectionalEnumGraph<>(Small.class);
+    graph.addEdges(
+        new Edge<>(Small.A, Small.B), new Edge<>(Small.B, Small.C), new Edge<>(Small.C, Small.D));
+    graph.addEdge(new Edge<>(Small.A, Small.C));
+
+    assertEquals(Small.C, graph.getNextHop(Small.A, Small.D));
+    assertEquals(Small.D, graph.getNextHop(Small.C, Small.D));
+    assertTrue(graph.hasRoute(Small.A, Small.D));
+    assertFalse(graph.hasRoute(Small.D, Small.A));
+    assertNull(graph.getNextHop(Small.D, Small.A));
+
+    graph.removeEdge(Small.A, Small.C);
+    assertEquals(Small.B, graph.getNextHop(Small.A, Small.D));
+  }
+
+  @Test
+  void vertexHasNoRouteToItself() {
+    DirectionalEnumGraph<Small, Edge<Small>> graph = new DirectionalEnumGraph<>(Small.class);
+    // A cycle back to A
+    graph.addEdges(new Edge<>(Small.A, Small.B), new Edge<>(Small.B, Small.A));
+
+    assertNull(graph.getNextHop(Small.A, Small.A));
+    assertFalse(graph.hasRoute(Small.A, Small.A));
+    assertEquals(1L << Small.B.ordinal(), graph.getReachableMask(Small.A));
+  }
+
+  @Test
+  void largeEnumsSpanSeveralWords() {
+    assertFalse(DirectionalEnumGraph.fitsInMask(Large.values().length));
+    DirectionalEnumGraph<Large, Edge<Large>> graph = new DirectionalEnumGraph<>(Large.class);
+    graph.addEdges(
+        new Edge<>(Large.S00, Large.S63),
+        new Edge<>(Large.S63, Large.S64),
+        new Edge<>(Large.S64, Large.S69),
+        new Edge<>(Large.S69, Large.S00));
+
+    assertEquals(Large.S63, graph.getNextHop(Large.S00, Large.S69));
+    assertEquals(Large.S69, graph.getNextHop(Large.S64, Large.S00));
+    assertTrue(graph.hasRoute(Large.S64, Large.S63));
+    assertFalse(graph.hasRoute(Large.S00, Large.S01));
+    assertFalse(graph.hasRoute(Large.S00, Large.S00));
+    assertEquals(1, graph.getOutDegree(Large.S64));
+    assertEquals(1, graph.getInDegree(Large.S00));
+
+    graph.removeOutgoingEdges(Large.S63);
+    assertFalse(graph.hasRoute(Large.S00, Large.S64));
+    assertThrows(IllegalStateException.class, () -> graph.getOutgoingMask(Large.S00));
+  }
+}
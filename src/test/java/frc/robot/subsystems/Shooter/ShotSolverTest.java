@@ -0,0 +1,118 @@
+package frc.robot.subsystems.Shooter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ShotSolverTest {
+  private static final double DELTA = 1e-3;
+
+  // Time of flight is 0.2 s per meter and velocity is 40 rot/s plus 4 rot/s per meter
+  private static final ShotMap LINEAR_MAP =
+      new ShotMap(
+          new double[] {0.0, 10.0},
+          new double[] {40.0, 80.0},
+          new double[] {0.0, 0.0},
+          new double[] {0.0, 2.0});
+
+  @Test
+  void stationaryRobotAimsAtTarget() {
+    ShotSolver solver = new ShotSolver(LINEAR_MAP);
+
+    assertTrue(solver.solve(1.0, 1.0, 0.0, 0.0, 4.0, 5.0));
+    assertEquals(4.0, solver.getVirtualTargetX(), DELTA);
+    assertEquals(5.0, solver.getVirtualTargetY(), DELTA);
+    assertEquals(5.0, solver.getDistance(), DELTA);
+    assertEquals(60.0, solver.getVelocity(), DELTA);
+    assertEquals(Math.atan2(4.0, 3.0), solver.getHeading(), DELTA);
+    assertEquals(1, solver.getIterations());
+  }
+
+  @Test
+  void movingRobotLeadsTarget() {
+    ShotSolver solver = new ShotSolver(LINEAR_MAP);
+
+    // Driving at 2 m/s across a target 3 m ahead, the virtual target is at (3, y) with
+    // y = -2 * 0.2 * sqrt(9 + y^2), so y^2 = 1.44 / 0.84
+    assertTrue(solver.solve(0.0, 0.0, 0.0, 2.0, 3.0, 0.0));
+    double y = -Math.sqrt(1.44 / 0.84);
+    double distance = Math.hypot(3.0, y);
+    assertEquals(3.0, solver.getVirtualTargetX(), DELTA);
+    assertEquals(y, solver.getVirtualTargetY(), DELTA);
+    assertEquals(distance, solver.getDistance(), DELTA);
+    assertEquals(40.0 + 4.0 * distance, solver.getVelocity(), DELTA);
+    assertEquals(Math.atan2(y, 3.0), solver.getHeading(), DELTA);
+    assertTrue(solver.getIterations() > 1);
+  }
+
+  @Test
+  void zeroTimeOfFlightAimsAtTarget() {
+    ShotSolver solver = new ShotSolver(ShotMap.constant(50.0));
+
+    assertTrue(solver.solve(0.0, 0.0, 3.0, -2.0, 3.0, 4.0));
+    assertEquals(3.0, solver.getVirtualTargetX(), DELTA);
+    assertEquals(4.0, solver.getVirtualTargetY(), DELTA);
+    assertEquals(50.0, solver.getVelocity(), DELTA);
+    assertEquals(1, solver.getIterations());
+  }
+
+  @Test
+  void stopsAfterMaxIterationsWithoutConverging() {
+    // The lead from 3 m puts the virtual target past 5 m, where there is no lead, so the estimate
+    // jumps between the two forever
+    ShotMap unstableMap =
+        new ShotMap(
+            new double[] {3.0, 5.0},
+            new double[] {40.0, 40.0},
+            new double[] {0.0, 0.0},
+            new double[] {1.0, 0.0});
+    ShotSolver solver = new ShotSolver(unstableMap);
+
+    assertFalse(solver.solve(0.0, 0.0, 0.0, 5.0, 3.0, 0.0));
+    assertFalse(solver.isConverged());
+    assertEquals(ShotSolver.MAX_ITERATIONS, solver.getIterations());
+  }
+
+  @Test
+  void clampsToEndsOfMap() {
+    ShotMap shortMap =
+        new ShotMap(
+            new double[] {2.0, 6.0},
+            new double[] {40.0, 60.0},
+            new double[] {0.0, 0.0},
+            new double[] {0.5, 1.0});
+    ShotSolver solver = new ShotSolver(shortMap);
+
+    solver.solve(0.0, 0.0, 0.0, 0.0, 1.0, 0.0);
+    assertEquals(40.0, solver.getVelocity(), DELTA);
+
+    solver.solve(0.0, 0.0, 0.0, 0.0, 10.0, 0.0);
+    assertEquals(60.0, solver.getVelocity(), DELTA);
+
+    // Beyond the map the time of flight is clamped to 1 s, so the lead is the robot's velocity
+    assertTrue(solver.solve(0.0, 0.0, 0.0, 1.0, 10.0, 0.0));
+    assertEquals(-1.0, solver.getVirtualTargetY(), DELTA);
+  }
+
+  @Test
+  void solvesInMicroseconds() {
+    ShotSolver solver = new ShotSolver(LINEAR_MAP);
+    int warmup = 20000;
+    int solves = 100000;
+    for (int i = 0; i < warmup; i++) {
+      solver.solve(0.0, 0.0, 0.0, (i % 20) * 0.1, 3.0, 0.0);
+    }
+
+    long start = System.nanoTime();
+    int converged = 0;
+    for (int i = 0; i < solves; i++) {
+      if (solver.solve(0.0, 0.0, 0.0, (i % 20) * 0.1, 3.0, 0.0)) converged++;
+    }
+    double microsPerSolve = (System.nanoTime() - start) / 1e3 / solves;
+
+    assertEquals(solves, converged);
+    assertTrue(microsPerSolve < 10.0, "Took " + microsPerSolve + " us per solve");
+  }
+}
@@ -0,0 +1,194 @@
+package frc.robot.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import frc.robot.generated.TunerConstants;
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the odometry paths of {@link Module} and {@link Drive} do not allocate once they are
+ * warmed up. Only our own code is measured: the IO implementations build new input arrays every
+ * cycle, so they are either measured separately and subtracted or replaced with fakes that reuse
+ * their arrays, and the pose estimator update is stubbed out because it allocates per sample inside
+ * WPILib. Headings are held constant, since each new heading is a new {@link Rotation2d}.
+ */
+class OdometryAllocationTest {
+  private static final int WARMUP_ITERATIONS = 2000;
+  private static final int ITERATIONS = 1000;
+  private static final int SAMPLES_PER_CYCLE = 5;
+
+  /// Slack for allocations made by the measurement itself
+  private static final long ALLOWED_BYTES = 1024;
+
+  private static final com.sun.management.ThreadMXBean threadBean =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  @BeforeAll
+  static void setup() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  @Test
+  void simModuleOdometryDoesNotAllocate() {
+    // Two identical sims so the IO allocations can be measured on their own
+    ModuleIOSim ioOnly = new ModuleIOSim(TunerConstants.FrontLeft);
+    ModuleIOInputsAutoLogged ioOnlyInputs = new ModuleIOInputsAutoLogged();
+    Module module =
+        new Module(new ModuleIOSim(TunerConstants.FrontLeft), 0, TunerConstants.FrontLeft);
+    module.runCharacterization(6.0);
+    ioOnly.setDriveOpenLoop(6.0);
+    ioOnly.setTurnPosition(Rotation2d.kZero);
+
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      ioOnly.updateInputs(ioOnlyInputs);
+      module.periodic();
+    }
+
+    long ioBytes = allocatedBytes();
+    for (int i = 0; i < ITERATIONS; i++) {
+      ioOnly.updateInputs(ioOnlyInputs);
+    }
+    ioBytes = allocatedBytes() - ioBytes;
+
+    long moduleBytes = allocatedBytes();
+    for (int i = 0; i < ITERATIONS; i++) {
+      module.periodic();
+      readPositions(module);
+    }
+    moduleBytes = allocatedBytes() - moduleBytes;
+
+    assertTrue(
+        moduleBytes - ioBytes <= ALLOWED_BYTES,
+        "Module odometry allocated "
+            + (moduleBytes - ioBytes)
+            + " bytes over "
+            + ITERATIONS
+            + " cycles");
+  }
+
+  @Test
+  void queuedOdometryDoesNotAllocate() {
+    Module module = new Module(new QueuedModuleIO(), 0, TunerConstants.FrontLeft);
+
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      module.periodic();
+    }
+
+    long bytes = allocatedBytes();
+    for (int i = 0; i < ITERATIONS; i++) {
+      module.periodic();
+      readPositions(module);
+    }
+    bytes = allocatedBytes() - bytes;
+
+    assertEquals(SAMPLES_PER_CYCLE, module.getOdometrySampleCount());
+    assertTrue(
+        bytes <= ALLOWED_BYTES,
+        "Module odometry allocated " + bytes + " bytes over " + ITERATIONS + " cycles");
+  }
+
+  @Test
+  void driveOdometryDoesNotAllocate() {
+    int[] estimatorSamples = {0};
+    Drive drive =
+        new Drive(
+            new QueuedGyroIO(),
+            new QueuedModuleIO(),
+            new QueuedModuleIO(),
+            new QueuedModuleIO(),
+            new QueuedModuleIO()) {
+          @Override
+          void addOdometrySample(
+              double timestamp, Rotation2d gyroRotation, SwerveModulePosition[] modulePositions) {
+            estimatorSamples[0]++;
+          }
+        };
+
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      drive.periodic();
+    }
+
+    estimatorSamples[0] = 0;
+    long bytes = allocatedBytes();
+    for (int i = 0; i < ITERATIONS; i++) {
+      drive.periodic();
+    }
+    bytes = allocatedBytes() - bytes;
+
+    assertEquals(ITERATIONS * SAMPLES_PER_CYCLE, estimatorSamples[0]);
+    assertTrue(
+        bytes <= ALLOWED_BYTES,
+        "Drive odometry allocated " + bytes + " bytes over " + ITERATIONS + " cycles");
+  }
+
+  /**
+   * Fills the odometry inputs with per-signal timestamps like the TalonFX IO, but reuses its
+   * arrays. The real IO hands AdvantageKit new arrays every cycle, so those are not measured here.
+   */
+  private static class QueuedModuleIO implements ModuleIO {
+    private final double[] timestamps = new double[SAMPLES_PER_CYCLE];
+    private final double[] drivePositions = new double[SAMPLES_PER_CYCLE];
+    private final double[] driveTimestamps = new double[SAMPLES_PER_CYCLE];
+    private final double[] turnPositions = new double[SAMPLES_PER_CYCLE];
+    private final double[] turnTimestamps = new double[SAMPLES_PER_CYCLE];
+    private double time = 0.0;
+
+    @Override
+    public void updateInputs(ModuleIOInputs inputs) {
+      for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+        time += 0.004;
+        timestamps[i] = time;
+        driveTimestamps[i] = time - 0.001;
+        drivePositions[i] = time * 10.0;
+        turnTimestamps[i] = time - 0.002;
+        turnPositions[i] = 1.0;
+      }
+      inputs.driveConnected = true;
+      inputs.turnConnected = true;
+      inputs.turnEncoderConnected = true;
+      inputs.odometryTimestamps = timestamps;
+      inputs.odometryDrivePositionsRad = drivePositions;
+      inputs.odometryDriveTimestamps = driveTimestamps;
+      inputs.odometryTurnPositionsRad = turnPositions;
+      inputs.odometryTurnTimestamps = turnTimestamps;
+    }
+  }
+
+  /** Fills the yaw inputs at their own timestamps so Drive resamples them, reusing its arrays */
+  private static class QueuedGyroIO implements GyroIO {
+    private final double[] yawTimestamps = new double[SAMPLES_PER_CYCLE];
+    private final double[] yawPositions = new double[SAMPLES_PER_CYCLE];
+    private double time = 0.0;
+
+    @Override
+    public void updateInputs(GyroIOInputs inputs) {
+      for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+        time += 0.004;
+        yawTimestamps[i] = time - 0.0015;
+        yawPositions[i] = 0.5;
+      }
+      inputs.connected = true;
+      inputs.odometryYawTimestamps = yawTimestamps;
+      inputs.odometryYawPositionsRad = yawPositions;
+    }
+  }
+
+  /** Read the positions the way Drive does, so the reads are part of the measured loop */
+  private static double readPositions(Module module) {
+    double sum = 0.0;
+    for (int i = 0; i < module.getOdometrySampleCount(); i++) {
+      sum += module.getOdometryPositions()[i].distanceMeters;
+    }
+    return sum;
+  }
+
+  private static long allocatedBytes() {
+    return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}